@@ -59,6 +59,24 @@ package org.joor;
 
 
 
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
 
 
 
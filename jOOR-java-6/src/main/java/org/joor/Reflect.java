@@ -13,23 +13,37 @@
  */
 package org.joor;
 
+// ...
 // ...
 // ...
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+// ...
+import java.util.Set;
 // ...
 
+import org.joor.ReflectCache.ConstructorEntry;
+import org.joor.ReflectCache.FieldEntry;
+import org.joor.ReflectCache.FieldLayout;
+import org.joor.ReflectCache.MethodEntry;
+import org.joor.ReflectCache.ProxyClass;
+import org.joor.ReflectCache.ProxyEntry;
+import org.joor.ReflectCache.ProxyKind;
+
 /**
  * A wrapper for an {@link Object} or {@link Class} upon which reflective calls
  * can be made.
@@ -151,6 +165,45 @@ public class Reflect {
 
 
 
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
 
 
 
@@ -278,11 +331,15 @@ public class Reflect {
      * @return A wrapped object, to be used for further reflection.
      */
     public static Reflect on(Object object) {
-        return new Reflect(object == null ? Object.class : object.getClass(), object);
+        return on(object, InvocationMode.REFLECTION);
+    }
+
+    static Reflect on(Object object, InvocationMode mode) {
+        return new Reflect(object == null ? Object.class : object.getClass(), object, mode);
     }
 
-    private static Reflect on(Class<?> type, Object object) {
-        return new Reflect(type, object);
+    static Reflect on(Class<?> type, Object object, InvocationMode mode) {
+        return new Reflect(type, object, mode);
     }
 
     /**
@@ -352,6 +409,39 @@ public class Reflect {
     // Members
     // ---------------------------------------------------------------------
 
+    static final Object[]   NO_ARGS  = {};
+    static final Class<?>[] NO_TYPES = {};
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
 
 
 
@@ -392,24 +482,30 @@ public class Reflect {
     /**
      * The type of the wrapped object.
      */
-    private final Class<?> type;
+    private final Class<?>       type;
 
     /**
      * The wrapped object.
      */
-    private final Object   object;
+    private final Object         object;
+
+    /**
+     * The means by which members are invoked.
+     */
+    private final InvocationMode mode;
 
     // ---------------------------------------------------------------------
     // Constructors
     // ---------------------------------------------------------------------
 
     private Reflect(Class<?> type) {
-        this(type, type);
+        this(type, type, InvocationMode.REFLECTION);
     }
 
-    private Reflect(Class<?> type, Object object) {
+    private Reflect(Class<?> type, Object object, InvocationMode mode) {
         this.type = type;
         this.object = object;
+        this.mode = mode;
     }
 
     // ---------------------------------------------------------------------
@@ -426,6 +522,29 @@ public class Reflect {
         return (T) object;
     }
 
+    /**
+     * Wrap the same object, using another {@link InvocationMode}.
+     * <p>
+     * The mode is passed on to all wrappers produced by the resulting wrapper,
+     * e.g. through {@link #call(String, Object...)}, {@link #field(String)},
+     * or {@link #create(Object...)}. For example: <pre><code>
+     * on(object).mode(InvocationMode.METHOD_HANDLES).call("a").call("b");
+     * </code></pre>
+     *
+     * @param newMode The new invocation mode
+     * @return The same object, wrapped using the new invocation mode.
+     */
+    public Reflect mode(InvocationMode newMode) {
+        return on(type, object, newMode == null ? InvocationMode.REFLECTION : newMode);
+    }
+
+    /**
+     * Get the {@link InvocationMode} of this wrapper.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+
     /**
      * Set a field value.
      * <p>
@@ -455,20 +574,7 @@ public class Reflect {
      */
     public Reflect set(String name, Object value) throws ReflectException {
         try {
-            Field field = field0(name);
-
-            if ((field.getModifiers() & Modifier.FINAL) == Modifier.FINAL) {
-                try {
-                    Field modifiersField = Field.class.getDeclaredField("modifiers");
-                    modifiersField.setAccessible(true);
-                    modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
-                }
-
-                // [#48] E.g. Android doesn't have this field
-                catch (NoSuchFieldException ignore) {}
-            }
-
-            field.set(object, unwrap(value));
+            set(mode, field0(name), object, value);
             return this;
         }
         catch (Exception e) {
@@ -477,236 +583,1317 @@ public class Reflect {
     }
 
     /**
-     * Get a field value.
+     * Set several field values at once.
      * <p>
-     * This is roughly equivalent to {@link Field#get(Object)}. If the wrapped
-     * object is a {@link Class}, then this will get a value from a static
-     * member field. If the wrapped object is any other {@link Object}, then
-     * this will get a value from an instance member field.
-     * <p>
-     * If you want to "navigate" to a wrapped version of the field, use
-     * {@link #field(String)} instead.
+     * This is equivalent to calling {@link #set(String, Object)} for each
+     * map entry, in iteration order, except that the fields are resolved only
+     * once per type and list of names.
      *
-     * @param name The field name
-     * @return The field value
+     * @param values The new field values, by field name
+     * @return The same wrapped object, to be used for further reflection.
      * @throws ReflectException If any reflection exception occurred.
-     * @see #field(String)
+     * @see #setAll(String[], Object[])
      */
-    public <T> T get(String name) throws ReflectException {
-        return field(name).<T>get();
+    public Reflect setAll(Map<String, ?> values) throws ReflectException {
+        String[] names = new String[values.size()];
+        Object[] v = new Object[names.length];
+        int i = 0;
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            names[i] = entry.getKey();
+            v[i++] = entry.getValue();
+        }
+
+        return setAll(names, v);
     }
 
     /**
-     * Get a wrapped field.
+     * Set several field values at once.
      * <p>
-     * This is roughly equivalent to {@link Field#get(Object)}. If the wrapped
-     * object is a {@link Class}, then this will wrap a static member field. If
-     * the wrapped object is any other {@link Object}, then this wrap an
-     * instance member field.
+     * This is equivalent to calling {@link #set(String, Object)} for each
+     * name and value pair, in order, except that the fields are resolved, and
+     * their <code>final</code> modifiers removed, only once per type and list
+     * of names. To set the same fields on many objects, use
+     * {@link #writer(String...)} instead.
      *
-     * @param name The field name
-     * @return The wrapped field
+     * @param names The field names
+     * @param values The new field values, in the same order as the names
+     * @return The same wrapped object, to be used for further reflection.
      * @throws ReflectException If any reflection exception occurred.
      */
-    public Reflect field(String name) throws ReflectException {
-        try {
-            Field field = field0(name);
-            return on(field.getType(), field.get(object));
-        }
-        catch (Exception e) {
-            throw new ReflectException(e);
-        }
+    public Reflect setAll(String[] names, Object[] values) throws ReflectException {
+        set(mode, writePlan(names), object, values);
+        return this;
     }
 
-    private Field field0(String name) throws ReflectException {
-        Class<?> t = type();
-
-        // Try getting a public field
-        try {
-            return accessible(t.getField(name));
-        }
-
-        // Try again, getting a non-public field
-        catch (NoSuchFieldException e) {
-            do {
-                try {
-                    return accessible(t.getDeclaredField(name));
-                }
-                catch (NoSuchFieldException ignore) {}
-
-                t = t.getSuperclass();
-            }
-            while (t != null);
-
-            throw new ReflectException(e);
-        }
+    /**
+     * Resolve a set of fields once, to set their values repeatedly, on any
+     * number of instances of the wrapped type.
+     *
+     * @param names The field names
+     * @return The resolved fields.
+     * @throws ReflectException If any of the fields could not be found.
+     * @see #setAll(String[], Object[])
+     */
+    public ReflectWriter writer(String... names) throws ReflectException {
+        return new ReflectWriter(writePlan(names), mode);
     }
 
     /**
-     * Get a Map containing field names and wrapped values for the fields'
-     * values.
-     * <p>
-     * If the wrapped object is a {@link Class}, then this will return static
-     * fields. If the wrapped object is any other {@link Object}, then this will
-     * return instance fields.
-     * <p>
-     * These two calls are equivalent <pre><code>
-     * on(object).field("myField");
-     * on(object).fields().get("myField");
-     * </code></pre>
-     *
-     * @return A map containing field names and wrapped values.
+     * Resolve the fields for a list of field names, removing their
+     * <code>final</code> modifiers, if applicable, only once per type and
+     * list of names.
      */
-    public Map<String, Reflect> fields() {
-        Map<String, Reflect> result = new LinkedHashMap<String, Reflect>();
-        Class<?> t = type();
+    private FieldEntry[] writePlan(String[] names) throws ReflectException {
+        ReflectCache cache = ReflectCache.of(type());
+        FieldEntry[] result = cache.writePlan(Arrays.asList(names));
 
-        do {
-            for (Field field : t.getDeclaredFields()) {
-                if (type != object ^ Modifier.isStatic(field.getModifiers())) {
-                    String name = field.getName();
+        if (result == null) {
+            result = new FieldEntry[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                result[i] = field0(names[i]);
 
-                    if (!result.containsKey(name))
-                        result.put(name, field(name));
+                try {
+                    result[i].removeFinal();
+                }
+                catch (Exception e) {
+                    throw new ReflectException(e);
                 }
             }
 
-            t = t.getSuperclass();
+            result = cache.writePlan(Arrays.asList(names.clone()), result);
         }
-        while (t != null);
 
         return result;
     }
 
     /**
-     * Call a method by its name.
-     * <p>
-     * This is a convenience method for calling
-     * <code>call(name, new Object[0])</code>
-     *
-     * @param name The method name
-     * @return The wrapped method result or the same wrapped object if the
-     *         method returns <code>void</code>, to be used for further
-     *         reflection.
-     * @throws ReflectException If any reflection exception occurred.
-     * @see #call(String, Object...)
-     */
-    public Reflect call(String name) throws ReflectException {
-        return call(name, new Object[0]);
-    }
-
-    /**
-     * Call a method by its name.
-     * <p>
-     * This is roughly equivalent to {@link Method#invoke(Object, Object...)}.
-     * If the wrapped object is a {@link Class}, then this will invoke a static
-     * method. If the wrapped object is any other {@link Object}, then this will
-     * invoke an instance method.
-     * <p>
-     * Just like {@link Method#invoke(Object, Object...)}, this will try to wrap
-     * primitive types or unwrap primitive type wrappers if applicable. If
-     * several methods are applicable, by that rule, the first one encountered
-     * is called. i.e. when calling <pre><code>
-     * on(...).call("method", 1, 1);
-     * </code></pre> The first of the following methods will be called:
-     * <pre><code>
-     * public void method(int param1, Integer param2);
-     * public void method(Integer param1, int param2);
-     * public void method(Number param1, Number param2);
-     * public void method(Number param1, Object param2);
-     * public void method(int param1, Object param2);
-     * </code></pre>
-     * <p>
-     * The best matching method is searched for with the following strategy:
-     * <ol>
-     * <li>public method with exact signature match in class hierarchy</li>
-     * <li>non-public method with exact signature match on declaring class</li>
-     * <li>public method with similar signature in class hierarchy</li>
-     * <li>non-public method with similar signature on declaring class</li>
-     * </ol>
-     *
-     * @param name The method name
-     * @param args The method arguments
-     * @return The wrapped method result or the same wrapped object if the
-     *         method returns <code>void</code>, to be used for further
-     *         reflection.
-     * @throws ReflectException If any reflection exception occurred.
+     * Set field values resolved by {@link #writePlan(String[])}.
      */
-    public Reflect call(String name, Object... args) throws ReflectException {
-        Class<?>[] types = types(args);
+    static void set(InvocationMode mode, FieldEntry[] plan, Object object, Object[] values) throws ReflectException {
+        if (values.length != plan.length)
+            throw new ReflectException("Expected " + plan.length + " values, but got " + values.length);
 
-        // Try invoking the "canonical" method, i.e. the one with exact
-        // matching argument types
         try {
-            Method method = exactMethod(name, types);
-            return on(method, object, args);
+            for (int i = 0; i < plan.length; i++)
+                plan[i].set(mode, object, unwrap(values[i]));
         }
-
-        // If there is no exact match, try to find a method that has a "similar"
-        // signature if primitive argument types are converted to their wrappers
-        catch (NoSuchMethodException e) {
-            try {
-                Method method = similarMethod(name, types);
-                return on(method, object, args);
-            } catch (NoSuchMethodException e1) {
-                throw new ReflectException(e1);
-            }
+        catch (Exception e) {
+            throw new ReflectException(e);
         }
     }
 
     /**
-     * Searches a method with the exact same signature as desired.
-     * <p>
-     * If a public method is found in the class hierarchy, this method is returned.
-     * Otherwise a private method with the exact same signature is returned.
-     * If no exact match could be found, we let the {@code NoSuchMethodException} pass through.
+     * Set a field value, removing the <code>final</code> modifier first, if
+     * applicable.
      */
-    private Method exactMethod(String name, Class<?>[] types) throws NoSuchMethodException {
-        Class<?> t = type();
-
-        // first priority: find a public method with exact signature match in class hierarchy
-        try {
-            return t.getMethod(name, types);
-        }
-
-        // second priority: find a private method with exact signature match on declaring class
-        catch (NoSuchMethodException e) {
-            do {
-                try {
-                    return t.getDeclaredMethod(name, types);
-                }
-                catch (NoSuchMethodException ignore) {}
+    static void set(InvocationMode mode, FieldEntry entry, Object object, Object value) throws Exception {
+        entry.removeFinal();
+        entry.set(mode, object, unwrap(value));
+    }
 
-                t = t.getSuperclass();
+    /**
+     * Remove the <code>final</code> modifier from a field, if applicable.
+     */
+    static void removeFinal(Field field) throws Exception {
+        if ((field.getModifiers() & Modifier.FINAL) == Modifier.FINAL) {
+            try {
+                Field modifiersField = Field.class.getDeclaredField("modifiers");
+                modifiersField.setAccessible(true);
+                modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
             }
-            while (t != null);
 
-            throw new NoSuchMethodException();
+            // [#48] E.g. Android doesn't have this field
+            catch (NoSuchFieldException ignore) {}
         }
     }
 
     /**
-     * Searches a method with a similar signature as desired using
-     * {@link #isSimilarSignature(java.lang.reflect.Method, String, Class[])}.
+     * Get a field value.
      * <p>
-     * First public methods are searched in the class hierarchy, then private
-     * methods on the declaring class. If a method could be found, it is
-     * returned, otherwise a {@code NoSuchMethodException} is thrown.
-     */
-    private Method similarMethod(String name, Class<?>[] types) throws NoSuchMethodException {
-        Class<?> t = type();
-
-        // first priority: find a public method with a "similar" signature in class hierarchy
-        // similar interpreted in when primitive argument types are converted to their wrappers
-        for (Method method : t.getMethods()) {
-            if (isSimilarSignature(method, name, types)) {
-                return method;
+     * This is roughly equivalent to {@link Field#get(Object)}. If the wrapped
+     * object is a {@link Class}, then this will get a value from a static
+     * member field. If the wrapped object is any other {@link Object}, then
+     * this will get a value from an instance member field.
+     * <p>
+     * If you want to "navigate" to a wrapped version of the field, use
+     * {@link #field(String)} instead.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #field(String)
+     */
+    public <T> T get(String name) throws ReflectException {
+        return field(name).<T>get();
+    }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Get a <code>boolean</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getBoolean(Object)
+     */
+    public boolean getBoolean(String name) throws ReflectException {
+        try {
+            return field0(name).getBoolean(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>boolean</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setBoolean(Object, boolean)
+     */
+    public Reflect setBoolean(String name, boolean value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setBoolean(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>byte</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getByte(Object)
+     */
+    public byte getByte(String name) throws ReflectException {
+        try {
+            return field0(name).getByte(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>byte</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setByte(Object, byte)
+     */
+    public Reflect setByte(String name, byte value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setByte(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>char</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getChar(Object)
+     */
+    public char getChar(String name) throws ReflectException {
+        try {
+            return field0(name).getChar(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>char</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setChar(Object, char)
+     */
+    public Reflect setChar(String name, char value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setChar(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>short</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getShort(Object)
+     */
+    public short getShort(String name) throws ReflectException {
+        try {
+            return field0(name).getShort(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>short</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setShort(Object, short)
+     */
+    public Reflect setShort(String name, short value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setShort(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get an <code>int</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getInt(Object)
+     */
+    public int getInt(String name) throws ReflectException {
+        try {
+            return field0(name).getInt(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set an <code>int</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setInt(Object, int)
+     */
+    public Reflect setInt(String name, int value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setInt(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>long</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getLong(Object)
+     */
+    public long getLong(String name) throws ReflectException {
+        try {
+            return field0(name).getLong(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>long</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setLong(Object, long)
+     */
+    public Reflect setLong(String name, long value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setLong(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>float</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getFloat(Object)
+     */
+    public float getFloat(String name) throws ReflectException {
+        try {
+            return field0(name).getFloat(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>float</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setFloat(Object, float)
+     */
+    public Reflect setFloat(String name, float value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setFloat(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>double</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #get(String)
+     * @see Field#getDouble(Object)
+     */
+    public double getDouble(String name) throws ReflectException {
+        try {
+            return field0(name).getDouble(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>double</code> field value, without boxing it.
+     *
+     * @param name The field name
+     * @param value The new field value
+     * @return The same wrapped object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #set(String, Object)
+     * @see Field#setDouble(Object, double)
+     */
+    public Reflect setDouble(String name, double value) throws ReflectException {
+        try {
+            FieldEntry entry = field0(name);
+            entry.removeFinal();
+            entry.setDouble(mode, object, value);
+            return this;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a wrapped field.
+     * <p>
+     * This is roughly equivalent to {@link Field#get(Object)}. If the wrapped
+     * object is a {@link Class}, then this will wrap a static member field. If
+     * the wrapped object is any other {@link Object}, then this wrap an
+     * instance member field.
+     *
+     * @param name The field name
+     * @return The wrapped field
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Reflect field(String name) throws ReflectException {
+        return field(field0(name));
+    }
+
+    private Reflect field(FieldEntry entry) throws ReflectException {
+        try {
+            return on(entry.field.getType(), entry.get(mode, object), mode);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    private FieldEntry field0(String name) throws ReflectException {
+        FieldEntry result = fieldEntry(name);
+
+        if (result == null)
+            throw new ReflectException(new NoSuchFieldException(name));
+
+        return result;
+    }
+
+    /**
+     * Resolve a field, or return <code>null</code> if it doesn't exist.
+     */
+    private FieldEntry fieldEntry(String name) {
+        Class<?> t = type();
+        ReflectCache cache = ReflectCache.of(t);
+        FieldEntry entry = cache.field(name);
+
+        if (entry != null)
+            return entry;
+        else if (cache.isMissingField(name))
+            return null;
+
+        // Try getting a public field
+        Field result = cache.publicField(name);
+
+        // Try again, getting a non-public field
+        while (result == null && t != null) {
+            result = ReflectCache.of(t).declaredField(name);
+            t = t.getSuperclass();
+        }
+
+        if (result == null) {
+            cache.missingField(name);
+            return null;
+        }
+
+        return cache.field(name, accessible(result));
+    }
+
+    /**
+     * Prepare a field for repeated access.
+     * <p>
+     * The field is looked up only once, just like by {@link #field(String)}.
+     * The resulting {@link ReflectField} can then be used to read or write the
+     * field on any instance of the wrapped type, using the
+     * {@link InvocationMode} of this wrapper. For example: <pre><code>
+     * ReflectField field = onClass(C.class).fieldAccessor("value");
+     *
+     * for (C c : list)
+     *     sum += field.&lt;Integer&gt;get(c);
+     * </code></pre>
+     *
+     * @param name The field name
+     * @return The prepared field
+     * @throws ReflectException If the field could not be found.
+     */
+    public ReflectField fieldAccessor(String name) throws ReflectException {
+        return new ReflectField(field0(name), mode);
+    }
+
+    /**
+     * Get a Map containing field names and wrapped values for the fields'
+     * values.
+     * <p>
+     * If the wrapped object is a {@link Class}, then this will return static
+     * fields. If the wrapped object is any other {@link Object}, then this will
+     * return instance fields.
+     * <p>
+     * These two calls are equivalent <pre><code>
+     * on(object).field("myField");
+     * on(object).fields().get("myField");
+     * </code></pre>
+     * <p>
+     * The fields are resolved only once per type. The resulting map is an
+     * unmodifiable view, whose values are read only when they are accessed.
+     *
+     * @return A map containing field names and wrapped values.
+     * @see #values()
+     */
+    public Map<String, Reflect> fields() {
+        return new Fields(this, layout());
+    }
+
+    /**
+     * Get the unwrapped values of all fields, in the iteration order of
+     * {@link #fields()}.
+     *
+     * @return The field values.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Object[] values() throws ReflectException {
+        FieldEntry[] entries = layout().entries;
+        Object[] result = new Object[entries.length];
+
+        try {
+            for (int i = 0; i < entries.length; i++)
+                result[i] = entries[i].get(mode, object);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve the fields of {@link #fields()}, only once per type.
+     */
+    private FieldLayout layout() {
+        boolean isStatic = (type == object);
+        ReflectCache cache = ReflectCache.of(type());
+        FieldLayout result = cache.layout(isStatic);
+
+        if (result == null) {
+            Map<String, FieldEntry> fields = new LinkedHashMap<String, FieldEntry>();
+            Class<?> t = type();
+
+            do {
+                for (Field field : t.getDeclaredFields()) {
+                    if (isStatic == Modifier.isStatic(field.getModifiers())) {
+                        String name = field.getName();
+
+                        if (!fields.containsKey(name))
+                            fields.put(name, field0(name));
+                    }
+                }
+
+                t = t.getSuperclass();
+            }
+            while (t != null);
+
+            result = cache.layout(isStatic, new FieldLayout(fields));
+        }
+
+        return result;
+    }
+
+    /**
+     * The lazy view of {@link #fields()}.
+     */
+    private static final class Fields extends AbstractMap<String, Reflect> {
+        private final Reflect     reflect;
+        private final FieldLayout layout;
+
+        Fields(Reflect reflect, FieldLayout layout) {
+            this.reflect = reflect;
+            this.layout = layout;
+        }
+
+        @Override
+        public Reflect get(Object key) {
+            Integer i = layout.index.get(key);
+            return i == null ? null : reflect.field(layout.entries[i]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return layout.index.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return layout.names.length;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Reflect>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Reflect>>() {
+                @Override
+                public Iterator<Map.Entry<String, Reflect>> iterator() {
+                    return new Iterator<Map.Entry<String, Reflect>>() {
+                        int i;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < layout.names.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Reflect> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+
+                            Map.Entry<String, Reflect> result = new SimpleImmutableEntry<String, Reflect>(
+                                layout.names[i], reflect.field(layout.entries[i]));
+
+                            i++;
+                            return result;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return layout.names.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Call a method by its name.
+     * <p>
+     * This is a convenience method for calling
+     * <code>call(name, new Object[0])</code>
+     *
+     * @param name The method name
+     * @return The wrapped method result or the same wrapped object if the
+     *         method returns <code>void</code>, to be used for further
+     *         reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #call(String, Object...)
+     */
+    public Reflect call(String name) throws ReflectException {
+        return call(name, NO_ARGS);
+    }
+
+    /**
+     * Call a method by its name.
+     * <p>
+     * This is roughly equivalent to {@link Method#invoke(Object, Object...)}.
+     * If the wrapped object is a {@link Class}, then this will invoke a static
+     * method. If the wrapped object is any other {@link Object}, then this will
+     * invoke an instance method.
+     * <p>
+     * Just like {@link Method#invoke(Object, Object...)}, this will try to wrap
+     * primitive types or unwrap primitive type wrappers if applicable. If
+     * several methods are applicable, by that rule, the first one encountered
+     * is called. i.e. when calling <pre><code>
+     * on(...).call("method", 1, 1);
+     * </code></pre> The first of the following methods will be called:
+     * <pre><code>
+     * public void method(int param1, Integer param2);
+     * public void method(Integer param1, int param2);
+     * public void method(Number param1, Number param2);
+     * public void method(Number param1, Object param2);
+     * public void method(int param1, Object param2);
+     * </code></pre>
+     * <p>
+     * The best matching method is searched for with the following strategy:
+     * <ol>
+     * <li>public method with exact signature match in class hierarchy</li>
+     * <li>non-public method with exact signature match on declaring class</li>
+     * <li>public method with similar signature in class hierarchy</li>
+     * <li>non-public method with similar signature on declaring class</li>
+     * </ol>
+     * <p>
+     * The outcome of this search is cached per type, method name, and
+     * argument types.
+     *
+     * @param name The method name
+     * @param args The method arguments
+     * @return The wrapped method result or the same wrapped object if the
+     *         method returns <code>void</code>, to be used for further
+     *         reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Reflect call(String name, Object... args) throws ReflectException {
+        return on(mode, methodFor(name, args), object, args);
+    }
+
+    /**
+     * Call a method that returns an <code>int</code>, without
+     * boxing the result.
+     * <p>
+     * This is a convenience method for calling
+     * <code>callInt(name, new Object[0])</code>
+     *
+     * @param name The method name
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #callInt(String, Object...)
+     */
+    public int callInt(String name) throws ReflectException {
+        return callInt(name, NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns an <code>int</code>, without
+     * boxing the result.
+     * <p>
+     * The method is looked up like by {@link #call(String, Object...)}. From
+     * Java 8 on, unless the {@link InvocationMode} is
+     * {@link InvocationMode#REFLECTION}, a method with a primitive return
+     * type is invoked through a cached
+     * <code>java.lang.invoke.MethodHandle</code> of a fixed
+     * <code>int</code> return type.
+     *
+     * @param name The method name
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public int callInt(String name, Object... args) throws ReflectException {
+        try {
+            MethodEntry entry = methodFor(name, args);
+            accessible(entry.method);
+            return entry.invokeInt(mode, object, args);
+        }
+        catch (ReflectException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method that returns a <code>long</code>, without
+     * boxing the result.
+     * <p>
+     * This is a convenience method for calling
+     * <code>callLong(name, new Object[0])</code>
+     *
+     * @param name The method name
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #callLong(String, Object...)
+     */
+    public long callLong(String name) throws ReflectException {
+        return callLong(name, NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>long</code>, without
+     * boxing the result.
+     * <p>
+     * The method is looked up like by {@link #call(String, Object...)}. From
+     * Java 8 on, unless the {@link InvocationMode} is
+     * {@link InvocationMode#REFLECTION}, a method with a primitive return
+     * type is invoked through a cached
+     * <code>java.lang.invoke.MethodHandle</code> of a fixed
+     * <code>long</code> return type.
+     *
+     * @param name The method name
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public long callLong(String name, Object... args) throws ReflectException {
+        try {
+            MethodEntry entry = methodFor(name, args);
+            accessible(entry.method);
+            return entry.invokeLong(mode, object, args);
+        }
+        catch (ReflectException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method that returns a <code>double</code>, without
+     * boxing the result.
+     * <p>
+     * This is a convenience method for calling
+     * <code>callDouble(name, new Object[0])</code>
+     *
+     * @param name The method name
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #callDouble(String, Object...)
+     */
+    public double callDouble(String name) throws ReflectException {
+        return callDouble(name, NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>double</code>, without
+     * boxing the result.
+     * <p>
+     * The method is looked up like by {@link #call(String, Object...)}. From
+     * Java 8 on, unless the {@link InvocationMode} is
+     * {@link InvocationMode#REFLECTION}, a method with a primitive return
+     * type is invoked through a cached
+     * <code>java.lang.invoke.MethodHandle</code> of a fixed
+     * <code>double</code> return type.
+     *
+     * @param name The method name
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public double callDouble(String name, Object... args) throws ReflectException {
+        try {
+            MethodEntry entry = methodFor(name, args);
+            accessible(entry.method);
+            return entry.invokeDouble(mode, object, args);
+        }
+        catch (ReflectException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method that returns a <code>boolean</code>, without
+     * boxing the result.
+     * <p>
+     * This is a convenience method for calling
+     * <code>callBoolean(name, new Object[0])</code>
+     *
+     * @param name The method name
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #callBoolean(String, Object...)
+     */
+    public boolean callBoolean(String name) throws ReflectException {
+        return callBoolean(name, NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>boolean</code>, without
+     * boxing the result.
+     * <p>
+     * The method is looked up like by {@link #call(String, Object...)}. From
+     * Java 8 on, unless the {@link InvocationMode} is
+     * {@link InvocationMode#REFLECTION}, a method with a primitive return
+     * type is invoked through a cached
+     * <code>java.lang.invoke.MethodHandle</code> of a fixed
+     * <code>boolean</code> return type.
+     *
+     * @param name The method name
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public boolean callBoolean(String name, Object... args) throws ReflectException {
+        try {
+            MethodEntry entry = methodFor(name, args);
+            accessible(entry.method);
+            return entry.invokeBoolean(mode, object, args);
+        }
+        catch (ReflectException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Prepare a method for repeated invocation.
+     * <p>
+     * The method is looked up only once, using the same strategy as
+     * {@link #call(String, Object...)}, given the argument types. The
+     * resulting {@link ReflectMethod} can then be called on any instance of
+     * the wrapped type, using the {@link InvocationMode} of this wrapper,
+     * without any further lookups. For example: <pre><code>
+     * ReflectMethod method = onClass(String.class).method("substring", int.class);
+     *
+     * for (String string : list)
+     *     result.add(method.&lt;String&gt;invoke(string, 1));
+     * </code></pre>
+     *
+     * @param name The method name
+     * @param types The argument types
+     * @return The prepared method
+     * @throws ReflectException If no matching method could be found.
+     */
+    public ReflectMethod method(String name, Class<?>... types) throws ReflectException {
+        // The types are cached, so they must not be shared with the caller
+        return new ReflectMethod(method0(name, types == null ? NO_TYPES : types.clone()), mode);
+    }
+
+    /**
+     * Resolve a method for a set of arguments, first probing the cache
+     * without computing their types.
+     */
+    private MethodEntry methodFor(String name, Object[] args) throws ReflectException {
+        MethodEntry result = ReflectCache.of(type()).methodFor(name, args);
+        return result != null ? result : method0(name, types(args));
+    }
+
+    private MethodEntry method0(String name, Class<?>[] types) throws ReflectException {
+        ReflectCache cache = ReflectCache.of(type());
+        MethodEntry entry = cache.method(name, types);
+
+        if (entry == null) {
+
+            // Try invoking the "canonical" method, i.e. the one with exact
+            // matching argument types
+            Method method = exactMethod(name, types);
+
+            // If there is no exact match, try to find a method that has a "similar"
+            // signature if primitive argument types are converted to their wrappers
+            if (method == null)
+                method = similarMethod(name, types);
+
+            if (method == null)
+                throw new ReflectException(new NoSuchMethodException("No similar method " + name + " with params " + Arrays.toString(types) + " could be found on type " + type() + "."));
+
+            entry = cache.method(name, types, method);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Searches a method with the exact same signature as desired.
+     * <p>
+     * If a public method is found in the class hierarchy, this method is returned.
+     * Otherwise a private method with the exact same signature is returned.
+     * If no exact match could be found, <code>null</code> is returned.
+     */
+    private Method exactMethod(String name, Class<?>[] types) {
+        Class<?> t = type();
+
+        // first priority: find a public method with exact signature match in class hierarchy
+        Method result = exactMethod(ReflectCache.of(t).publicMethods(name), types);
+
+        // second priority: find a private method with exact signature match on declaring class
+        while (result == null && t != null) {
+            result = exactMethod(ReflectCache.of(t).declaredMethods(name), types);
+            t = t.getSuperclass();
+        }
+
+        return result;
+    }
+
+    /**
+     * Searches a method with the exact same signature as desired among a set
+     * of candidates.
+     * <p>
+     * Just like {@link Class#getMethod(String, Class...)}, this prefers the
+     * method with the most specific return type, if there are several
+     * candidates, e.g. due to covariant overrides.
+     */
+    private static Method exactMethod(Method[] methods, Class<?>[] types) {
+        Method result = null;
+
+        for (Method method : methods)
+            if (Arrays.equals(method.getParameterTypes(), types)
+                && (result == null || result.getReturnType().isAssignableFrom(method.getReturnType())))
+                result = method;
+
+        return result;
+    }
+
+    /**
+     * Searches a method with a similar signature as desired using
+     * {@link #isSimilarSignature(java.lang.reflect.Method, String, Class[])}.
+     * <p>
+     * First public methods are searched in the class hierarchy, then private
+     * methods on the declaring class. If a method could be found, it is
+     * returned, otherwise <code>null</code> is returned.
+     */
+    private Method similarMethod(String name, Class<?>[] types) {
+        Class<?> t = type();
+
+        // first priority: find a public method with a "similar" signature in class hierarchy
+        // similar interpreted in when primitive argument types are converted to their wrappers
+        for (Method method : ReflectCache.of(t).publicMethods(name)) {
+            if (isSimilarSignature(method, name, types)) {
+                return method;
             }
         }
 
         // second priority: find a non-public method with a "similar" signature on declaring class
         do {
-            for (Method method : t.getDeclaredMethods()) {
+            for (Method method : ReflectCache.of(t).declaredMethods(name)) {
                 if (isSimilarSignature(method, name, types)) {
                     return method;
                 }
@@ -716,7 +1903,7 @@ public class Reflect {
         }
         while (t != null);
 
-        throw new NoSuchMethodException("No similar method " + name + " with params " + Arrays.toString(types) + " could be found on type " + type() + ".");
+        return null;
     }
 
     /**
@@ -738,7 +1925,7 @@ public class Reflect {
      * @see #create(Object...)
      */
     public Reflect create() throws ReflectException {
-        return create(new Object[0]);
+        return create(NO_ARGS);
     }
 
     /**
@@ -768,28 +1955,222 @@ public class Reflect {
      * @throws ReflectException If any reflection exception occurred.
      */
     public Reflect create(Object... args) throws ReflectException {
-        Class<?>[] types = types(args);
+        ConstructorEntry entry = ReflectCache.of(type()).constructorFor(args);
+        return on(mode, entry != null ? entry : constructor0(types(args)), args);
+    }
 
-        // Try invoking the "canonical" constructor, i.e. the one with exact
-        // matching argument types
-        try {
-            Constructor<?> constructor = type().getDeclaredConstructor(types);
-            return on(constructor, args);
-        }
+    /**
+     * Prepare a constructor for repeated invocation.
+     * <p>
+     * The constructor is looked up only once, using the same strategy as
+     * {@link #create(Object...)}, given the argument types. The resulting
+     * {@link ReflectConstructor} can then be called repeatedly, using the
+     * {@link InvocationMode} of this wrapper, without any further lookups.
+     *
+     * @param types The argument types
+     * @return The prepared constructor
+     * @throws ReflectException If no matching constructor could be found.
+     */
+    public ReflectConstructor constructor(Class<?>... types) throws ReflectException {
+        return new ReflectConstructor(constructor0(types == null ? NO_TYPES : types.clone()), mode);
+    }
+
+    private ConstructorEntry constructor0(Class<?>[] types) throws ReflectException {
+        ReflectCache cache = ReflectCache.of(type());
+        ConstructorEntry entry = cache.constructor(types);
+
+        if (entry == null) {
+            Constructor<?> constructor = null;
+            Constructor<?>[] constructors = cache.declaredConstructors();
 
-        // If there is no exact match, try to find one that has a "similar"
-        // signature if primitive argument types are converted to their wrappers
-        catch (NoSuchMethodException e) {
-            for (Constructor<?> constructor : type().getDeclaredConstructors()) {
-                if (match(constructor.getParameterTypes(), types)) {
-                    return on(constructor, args);
+            // Try invoking the "canonical" constructor, i.e. the one with exact
+            // matching argument types
+            for (Constructor<?> c : constructors) {
+                if (Arrays.equals(c.getParameterTypes(), types)) {
+                    constructor = c;
+                    break;
                 }
             }
 
-            throw new ReflectException(e);
+            // If there is no exact match, try to find one that has a "similar"
+            // signature if primitive argument types are converted to their wrappers
+            if (constructor == null) {
+                for (Constructor<?> c : constructors) {
+                    if (match(c.getParameterTypes(), types)) {
+                        constructor = c;
+                        break;
+                    }
+                }
+            }
+
+            if (constructor == null)
+                throw new ReflectException(new NoSuchMethodException(type().getName() + ".<init>" + Arrays.toString(types)));
+
+            entry = cache.constructor(types, constructor);
         }
+
+        return entry;
     }
 
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
     /**
      * Create a proxy for the wrapped object allowing to typesafely invoke methods
      * on it using a custom interface.
@@ -798,7 +2179,7 @@ public class Reflect {
      * @return A proxy for the wrapped object
      */
     public <P> P as(Class<P> proxyType) {
-        return as(proxyType, new Class[0]);
+        return as(proxyType, NO_TYPES);
     }
 
     /**
@@ -810,83 +2191,139 @@ public class Reflect {
      *            the proxy
      * @return A proxy for the wrapped object
      */
-    @SuppressWarnings("unchecked")
-    public <P> P as(final Class<P> proxyType, final Class<?>... additionalInterfaces) {
-        final boolean isMap = (object instanceof Map);
-        final InvocationHandler handler = new InvocationHandler() {
-            @Override
-            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                String name = method.getName();
-
-                // Actual method name matches always come first
-                try {
-                    return on(type, object).call(name, args).get();
-                }
-
-                // [#14] Emulate POJO behaviour on wrapped map objects
-                catch (ReflectException e) {
-                    if (isMap) {
-                        Map<String, Object> map = (Map<String, Object>) object;
-                        int length = (args == null ? 0 : args.length);
-
-                        if (length == 0 && name.startsWith("get")) {
-                            return map.get(property(name.substring(3)));
-                        }
-                        else if (length == 0 && name.startsWith("is")) {
-                            return map.get(property(name.substring(2)));
-                        }
-                        else if (length == 1 && name.startsWith("set")) {
-                            map.put(property(name.substring(3)), args[0]);
-                            return null;
-                        }
-                    }
-
-
-
-
-
-
-
+    public <P> P as(Class<P> proxyType, Class<?>... additionalInterfaces) {
+        return proxyFactory(proxyType, additionalInterfaces).as(object);
+    }
 
+    /**
+     * Create a factory for proxies of objects of the wrapped type, allowing to
+     * typesafely invoke methods on them using a custom interface.
+     * <p>
+     * <code>on(object).as(proxyType)</code> is equivalent to
+     * <code>on(object).proxyFactory(proxyType).as(object)</code>, but the
+     * factory can be reused to cheaply create many proxies for objects of the
+     * same type.
+     *
+     * @param proxyType The interface type that is implemented by the proxies
+     * @param additionalInterfaces Additional interfaces that are implemented by
+     *            the proxies
+     * @return A factory for proxies of objects of the wrapped type
+     */
+    public <P> ReflectProxyFactory<P> proxyFactory(Class<P> proxyType, Class<?>... additionalInterfaces) {
+        ReflectCache cache = ReflectCache.of(type());
+        boolean single = additionalInterfaces == null || additionalInterfaces.length == 0;
+        ProxyClass result = single ? cache.proxy(proxyType) : null;
 
+        if (result == null) {
+            Class<?>[] interfaces = new Class[1 + (single ? 0 : additionalInterfaces.length)];
+            interfaces[0] = proxyType;
 
+            if (!single)
+                System.arraycopy(additionalInterfaces, 0, interfaces, 1, additionalInterfaces.length);
 
+            Object key = single ? proxyType : Arrays.asList(interfaces);
+            result = cache.proxy(key, interfaces);
 
+            if (result == null)
+                result = cache.proxy(key, interfaces, dispatch(cache, interfaces));
+        }
 
+        return new ReflectProxyFactory<P>(type(), mode, result);
+    }
 
+    /**
+     * Compute the table of proxied methods that can be dispatched without
+     * resolving them on each call.
+     * <p>
+     * Methods are dispatched directly to the wrapped type only if their
+     * resolution does not depend on the runtime types of the arguments, i.e.
+     * if the wrapped type has no other method of the same name and number of
+     * parameters. Getters and setters that the wrapped type does not have at
+     * all are classified as {@link Map} accesses, with their property name.
+     */
+    private Map<Method, ProxyEntry> dispatch(ReflectCache cache, Class<?>[] interfaces) {
+        Map<Method, ProxyEntry> result = new HashMap<Method, ProxyEntry>();
 
+        for (Class<?> i : interfaces)
+            for (Method method : i.getMethods())
+                dispatch(cache, result, method);
 
+        // Proxies also dispatch equals(), hashCode() and toString()
+        for (Method method : Object.class.getMethods())
+            if (!Modifier.isFinal(method.getModifiers()))
+                dispatch(cache, result, method);
 
+        return result;
+    }
 
+    private void dispatch(ReflectCache cache, Map<Method, ProxyEntry> result, Method method) {
+        String name = method.getName();
+        Class<?>[] types = method.getParameterTypes();
+        Method resolved = exactMethod(name, types);
 
+        if (resolved == null)
+            resolved = similarMethod(name, types);
 
+        if (resolved != null) {
+            if (!hasOverloads(name, resolved.getParameterTypes())) {
+                try {
+                    result.put(method, new ProxyEntry(ProxyKind.METHOD, cache.method(name, types, accessible(resolved)), null, method));
+                }
 
+                // Inaccessible methods are left to the dynamic path, which reports the error
+                catch (RuntimeException ignore) {}
+            }
+        }
 
+        // [#14] Getters and setters of wrapped map objects, which fall back to
+        // the interface's default methods, if any
+        else if (!hasOverloads(name, types)) {
+            if (types.length == 0 && name.startsWith("get"))
+                result.put(method, new ProxyEntry(ProxyKind.MAP_GET, null, property(name.substring(3)), method));
+            else if (types.length == 0 && name.startsWith("is"))
+                result.put(method, new ProxyEntry(ProxyKind.MAP_GET, null, property(name.substring(2)), method));
+            else if (types.length == 1 && name.startsWith("set"))
+                result.put(method, new ProxyEntry(ProxyKind.MAP_PUT, null, property(name.substring(3)), method));
 
 
 
 
 
+        }
+    }
 
+    /**
+     * Whether the wrapped type has methods of a given name and number of
+     * parameters, other than the one with the given parameter types.
+     */
+    private boolean hasOverloads(String name, Class<?>[] types) {
+        Class<?> t = type();
 
+        for (Method other : ReflectCache.of(t).publicMethods(name))
+            if (isOverload(other, types))
+                return true;
 
+        do {
+            for (Method other : ReflectCache.of(t).declaredMethods(name))
+                if (isOverload(other, types))
+                    return true;
 
+            t = t.getSuperclass();
+        }
+        while (t != null);
 
-                    throw e;
-                }
-            }
-        };
+        return false;
+    }
 
-        Class<?>[] interfaces = new Class[1 + additionalInterfaces.length];
-        interfaces[0] = proxyType;
-        System.arraycopy(additionalInterfaces, 0, interfaces, 1, additionalInterfaces.length);
-        return (P) Proxy.newProxyInstance(proxyType.getClassLoader(), interfaces, handler);
+    private static boolean isOverload(Method other, Class<?>[] types) {
+        Class<?>[] otherTypes = other.getParameterTypes();
+        return otherTypes.length == types.length && !Arrays.equals(otherTypes, types);
     }
 
     /**
      * Get the POJO property name of an getter/setter
      */
-    private static String property(String string) {
+    static String property(String string) {
         int length = string.length();
 
         if (length == 0) {
@@ -953,9 +2390,10 @@ public class Reflect {
     /**
      * Wrap an object created from a constructor
      */
-    private static Reflect on(Constructor<?> constructor, Object... args) throws ReflectException {
+    static Reflect on(InvocationMode mode, ConstructorEntry constructor, Object... args) throws ReflectException {
         try {
-            return on(constructor.getDeclaringClass(), accessible(constructor).newInstance(args));
+            accessible(constructor.constructor);
+            return on(constructor.constructor.getDeclaringClass(), constructor.newInstance(mode, args), mode);
         }
         catch (Exception e) {
             throw new ReflectException(e);
@@ -965,16 +2403,16 @@ public class Reflect {
     /**
      * Wrap an object returned from a method
      */
-    private static Reflect on(Method method, Object object, Object... args) throws ReflectException {
+    static Reflect on(InvocationMode mode, MethodEntry method, Object object, Object... args) throws ReflectException {
         try {
-            accessible(method);
+            accessible(method.method);
 
-            if (method.getReturnType() == void.class) {
-                method.invoke(object, args);
-                return on(object);
+            if (method.isVoid) {
+                method.invoke(mode, object, args);
+                return on(object, mode);
             }
             else {
-                return on(method.invoke(object, args));
+                return on(method.invoke(mode, object, args), mode);
             }
         }
         catch (Exception e) {
@@ -985,7 +2423,7 @@ public class Reflect {
     /**
      * Unwrap an object
      */
-    private static Object unwrap(Object object) {
+    static Object unwrap(Object object) {
         if (object instanceof Reflect) {
             return ((Reflect) object).get();
         }
@@ -999,8 +2437,8 @@ public class Reflect {
      * @see Object#getClass()
      */
     private static Class<?>[] types(Object... values) {
-        if (values == null) {
-            return new Class[0];
+        if (values == null || values.length == 0) {
+            return NO_TYPES;
         }
 
         Class<?>[] result = new Class[values.length];
@@ -1077,5 +2515,5 @@ public class Reflect {
         return type;
     }
 
-    private static class NULL {}
+    static class NULL {}
 }
@@ -0,0 +1,2060 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+// ...
+// ...
+// ...
+// ...
+// ...
+// ...
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+// ...
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+// ...
+
+/**
+ * A cache of resolved members, held per {@link Class}.
+ * <p>
+ * The cache is attached to the class it describes, such that it can be
+ * garbage collected along with the class and its class loader. Members that
+ * reference types of unrelated class loaders, e.g. methods resolved for
+ * arguments of such types, are not cached, see {@link #isVisible(Class...)}.
+ * Besides resolution results, it holds lazily initialised tables of the
+ * class's members indexed by name, which allow for resolving members without
+ * resorting to exceptions such as {@link NoSuchMethodException} or
+ * {@link NoSuchFieldException} for control flow.
+ *
+ * @author Lukas Eder
+ */
+final class ReflectCache {
+
+
+
+
+
+
+
+
+
+
+    // ClassValue is not available prior to Java 7. The keys are weakly
+    // referenced, but each value strongly references its key through
+    // ReflectCache.type. A class, and thus its class loader, can therefore
+    // only be unloaded after the garbage collector has cleared the soft
+    // reference to its cache, which happens only under memory pressure.
+    private static final Map<Class<?>, SoftReference<ReflectCache>> LEGACY_CACHE = new WeakHashMap<Class<?>, SoftReference<ReflectCache>>();
+
+    private static final Method[]                                   NO_METHODS   = {};
+    private static final Object[]                                   NO_ARGS      = {};
+    private static final MethodEntry[]                              NO_PROBES    = {};
+
+    // The maximum number of argument type combinations per method name (or
+    // for constructors) that can be probed without allocating a Signature
+    private static final int                                        MAX_PROBES   = 8;
+
+    // The maximum number of field names per type that are remembered not to
+    // resolve. Callers may probe arbitrary, e.g. user supplied, names.
+    private static final int                                        MAX_MISSING_FIELDS = 64;
+
+    // The maximum number of methods and constructors per type that are cached
+    // by argument types. Callers may pass arguments of arbitrarily many
+    // runtime types, e.g. to a method accepting Object.
+    private static final int                                        MAX_SIGNATURES = 256;
+
+    // The maximum number of proxy classes cached per type
+    private static final int                                        MAX_PROXIES  = 64;
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * The type whose members are cached.
+     */
+    private final Class<?>                                 type;
+
+    /**
+     * Methods resolved by {@link Reflect#call(String, Object...)}.
+     */
+    private final ConcurrentMap<Signature, MethodEntry>    methods;
+
+    /**
+     * Constructors resolved by {@link Reflect#create(Object...)}.
+     */
+    private final ConcurrentMap<Signature, ConstructorEntry> constructors;
+
+    /**
+     * Methods resolved from argument values, by name, which can be probed
+     * without allocating a {@link Signature}.
+     */
+    private final ConcurrentMap<String, MethodEntry[]>     methodProbes;
+
+    /**
+     * Constructors resolved from argument values, which can be probed without
+     * allocating a {@link Signature}.
+     */
+    private volatile ConstructorEntry[]                    constructorProbes;
+
+    /**
+     * Accessible fields resolved by {@link Reflect#field(String)}.
+     */
+    private final ConcurrentMap<String, FieldEntry>        fields;
+
+    /**
+     * Field names that could not be resolved, up to
+     * {@link #MAX_MISSING_FIELDS}.
+     */
+    private final Set<String>                              missingFields;
+
+    /**
+     * Fields resolved by {@link Reflect#setAll(String[], Object[])}, by list
+     * of field names.
+     */
+    private final ConcurrentMap<List<String>, FieldEntry[]> writePlans;
+
+    /**
+     * Proxies created by {@link Reflect#as(Class, Class...)}, by proxied
+     * interface, or by list of proxied interfaces, if there are several.
+     * <p>
+     * If the interfaces aren't visible from the cached type, see
+     * {@link #isVisible(Class...)}, then the proxy is cached by the first
+     * interface instead, by a list of the wrapped type and the key.
+     */
+    private final ConcurrentMap<Object, ProxyClass>        proxies;
+
+    // Member tables, initialised lazily. Racing threads may initialise them
+    // several times, which is harmless, as the results are equivalent.
+    private volatile Map<String, Method[]>                 publicMethods;
+    private volatile Map<String, Method[]>                 declaredMethods;
+    private volatile Map<String, Field>                    publicFields;
+    private volatile Map<String, Field>                    declaredFields;
+    private volatile Constructor<?>[]                      declaredConstructors;
+
+    // Field layouts of Reflect.fields(), initialised lazily, like the member
+    // tables.
+    private volatile FieldLayout                           instanceLayout;
+    private volatile FieldLayout                           staticLayout;
+
+
+
+
+
+    private ReflectCache(Class<?> type) {
+        this.type = type;
+        this.methods = new ConcurrentHashMap<Signature, MethodEntry>();
+        this.constructors = new ConcurrentHashMap<Signature, ConstructorEntry>();
+        this.methodProbes = new ConcurrentHashMap<String, MethodEntry[]>();
+        this.constructorProbes = new ConstructorEntry[0];
+        this.fields = new ConcurrentHashMap<String, FieldEntry>();
+        this.missingFields = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.writePlans = new ConcurrentHashMap<List<String>, FieldEntry[]>();
+        this.proxies = new ConcurrentHashMap<Object, ProxyClass>();
+    }
+
+    /**
+     * Get the cache for a given type.
+     */
+    static ReflectCache of(Class<?> type) {
+
+
+
+
+
+        synchronized (LEGACY_CACHE) {
+            SoftReference<ReflectCache> reference = LEGACY_CACHE.get(type);
+            ReflectCache result = reference == null ? null : reference.get();
+
+            if (result == null)
+                LEGACY_CACHE.put(type, new SoftReference<ReflectCache>(result = new ReflectCache(type)));
+
+            return result;
+        }
+    }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Get the public methods of the cached type and its super types by name,
+     * as returned by {@link Class#getMethods()}.
+     */
+    Method[] publicMethods(String name) {
+        Map<String, Method[]> result = publicMethods;
+
+        if (result == null)
+            publicMethods = result = index(type.getMethods());
+
+        Method[] methods = result.get(name);
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    /**
+     * Get the methods declared by the cached type by name, as returned by
+     * {@link Class#getDeclaredMethods()}.
+     */
+    Method[] declaredMethods(String name) {
+        Map<String, Method[]> result = declaredMethods;
+
+        if (result == null)
+            declaredMethods = result = index(type.getDeclaredMethods());
+
+        Method[] methods = result.get(name);
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    /**
+     * Get a public field of the cached type or its super types by name, or
+     * <code>null</code> if there is no such field.
+     * <p>
+     * If several fields of the same name are visible, the one that
+     * {@link Class#getField(String)} would return is returned.
+     */
+    Field publicField(String name) {
+        Map<String, Field> result = publicFields;
+
+        if (result == null)
+            publicFields = result = index(type.getFields());
+
+        return result.get(name);
+    }
+
+    /**
+     * Get a field declared by the cached type by name, or <code>null</code> if
+     * there is no such field.
+     */
+    Field declaredField(String name) {
+        Map<String, Field> result = declaredFields;
+
+        if (result == null)
+            declaredFields = result = index(type.getDeclaredFields());
+
+        return result.get(name);
+    }
+
+    /**
+     * Get the constructors declared by the cached type, as returned by
+     * {@link Class#getDeclaredConstructors()}.
+     */
+    Constructor<?>[] declaredConstructors() {
+        Constructor<?>[] result = declaredConstructors;
+
+        if (result == null)
+            declaredConstructors = result = type.getDeclaredConstructors();
+
+        return result;
+    }
+
+    private static Map<String, Method[]> index(Method[] methods) {
+        Map<String, List<Method>> lists = new HashMap<String, List<Method>>();
+
+        for (Method method : methods) {
+            List<Method> list = lists.get(method.getName());
+
+            if (list == null)
+                lists.put(method.getName(), list = new ArrayList<Method>());
+
+            list.add(method);
+        }
+
+        Map<String, Method[]> result = new HashMap<String, Method[]>();
+        for (Map.Entry<String, List<Method>> entry : lists.entrySet())
+            result.put(entry.getKey(), entry.getValue().toArray(NO_METHODS));
+
+        return result;
+    }
+
+    private static Map<String, Field> index(Field[] fields) {
+        Map<String, Field> result = new HashMap<String, Field>();
+
+        // Fields are listed in lookup order, so shadowed fields come last
+        for (Field field : fields)
+            if (!result.containsKey(field.getName()))
+                result.put(field.getName(), field);
+
+        return result;
+    }
+
+    /**
+     * Whether types can be referenced from this cache without keeping their
+     * class loaders reachable for longer than the cached type's class loader.
+     * <p>
+     * This is the case if they are loaded by the cached type's class loader
+     * or one of its ancestors, or by jOOR's class loader, which the cache
+     * references anyway. Other types, e.g. the argument types of a call to
+     * <code>List.add()</code> with an object from a plugin's class loader,
+     * must not be cached, as that would prevent the plugin from being
+     * unloaded.
+     */
+    boolean isVisible(Class<?>... types) {
+        for (Class<?> t : types) {
+            while (t.isArray())
+                t = t.getComponentType();
+
+            ClassLoader loader = t.getClassLoader();
+
+            if (loader == null || loader == ReflectCache.class.getClassLoader())
+                continue;
+
+            ClassLoader l = type.getClassLoader();
+            while (l != null && l != loader)
+                l = l.getParent();
+
+            if (l == null)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get a previously resolved method, or <code>null</code> if no such
+     * method has been resolved yet.
+     */
+    MethodEntry method(String name, Class<?>[] types) {
+        return methods.get(new Signature(name, types));
+    }
+
+    /**
+     * Cache a resolved, accessible method, unless too many methods have been
+     * cached already, or the argument types aren't visible, see
+     * {@link #isVisible(Class...)}.
+     */
+    MethodEntry method(String name, Class<?>[] types, Method method) {
+        MethodEntry result = new MethodEntry(this, types, method);
+
+        if (methods.size() >= MAX_SIGNATURES || !isVisible(types))
+            return result;
+
+        MethodEntry previous = methods.putIfAbsent(new Signature(name, types), result);
+
+        if (previous != null)
+            return previous;
+
+        // Racing threads may drop each other's probes, which is harmless
+        MethodEntry[] probes = methodProbes.get(name);
+        if (probes == null)
+            probes = NO_PROBES;
+
+        if (probes.length < MAX_PROBES) {
+            MethodEntry[] copy = Arrays.copyOf(probes, probes.length + 1);
+            copy[probes.length] = result;
+            methodProbes.put(name, copy);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a previously resolved method for the runtime types of a set of
+     * arguments, or <code>null</code> if no such method has been resolved yet,
+     * without allocating any objects.
+     */
+    MethodEntry methodFor(String name, Object[] args) {
+        MethodEntry[] probes = methodProbes.get(name);
+
+        if (probes != null)
+            for (MethodEntry entry : probes)
+                if (matches(entry.types, args))
+                    return entry;
+
+        return null;
+    }
+
+    /**
+     * Get the previously resolved fields for a list of field names, or
+     * <code>null</code> if they haven't been resolved yet.
+     */
+    FieldEntry[] writePlan(List<String> names) {
+        return writePlans.get(names);
+    }
+
+    /**
+     * Cache the resolved fields for a list of field names.
+     */
+    FieldEntry[] writePlan(List<String> names, FieldEntry[] plan) {
+        FieldEntry[] previous = writePlans.putIfAbsent(names, plan);
+        return previous != null ? previous : plan;
+    }
+
+    /**
+     * Get the previously resolved instance or static field layout, or
+     * <code>null</code> if it hasn't been resolved yet.
+     */
+    FieldLayout layout(boolean isStatic) {
+        return isStatic ? staticLayout : instanceLayout;
+    }
+
+    /**
+     * Cache a resolved instance or static field layout.
+     */
+    FieldLayout layout(boolean isStatic, FieldLayout layout) {
+        if (isStatic)
+            staticLayout = layout;
+        else
+            instanceLayout = layout;
+
+        return layout;
+    }
+
+    /**
+     * Get a previously created proxy class by its key, or <code>null</code>
+     * if no such proxy class has been created yet, or if it is cached by its
+     * interface.
+     */
+    ProxyClass proxy(Object key) {
+        return proxies.get(key);
+    }
+
+    /**
+     * Get a previously created proxy class for a set of interfaces, or
+     * <code>null</code> if no such proxy class has been created yet.
+     */
+    ProxyClass proxy(Object key, Class<?>[] interfaces) {
+        ProxyClass result = proxies.get(key);
+
+        if (result == null && !isVisible(interfaces)) {
+            ReflectCache owner = proxyOwner(interfaces);
+
+            if (owner != null)
+                result = owner.proxies.get(Arrays.asList(type, key));
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache a proxy class for a set of interfaces, unless too many proxy
+     * classes have been cached already, or unless there is no cache from
+     * which all the involved types are visible.
+     */
+    ProxyClass proxy(Object key, Class<?>[] interfaces, Map<Method, ProxyEntry> dispatch) {
+        ProxyClass result = new ProxyClass(this, interfaces, dispatch);
+        ReflectCache owner = isVisible(interfaces) ? this : proxyOwner(interfaces);
+
+        if (owner == null || owner.proxies.size() >= MAX_PROXIES)
+            return result;
+
+        ProxyClass previous = owner.proxies.putIfAbsent(owner == this ? key : Arrays.asList(type, key), result);
+        return previous != null ? previous : result;
+    }
+
+    /**
+     * The cache of the first interface, if the cached type and all the
+     * interfaces are visible from it, or <code>null</code> otherwise.
+     */
+    private ReflectCache proxyOwner(Class<?>[] interfaces) {
+        ReflectCache result = of(interfaces[0]);
+        return result.isVisible(type) && result.isVisible(interfaces) ? result : null;
+    }
+
+    /**
+     * Get a previously resolved constructor, or <code>null</code> if no such
+     * constructor has been resolved yet.
+     */
+    ConstructorEntry constructor(Class<?>[] types) {
+        return constructors.get(new Signature("<init>", types));
+    }
+
+    /**
+     * Cache a resolved, accessible constructor, unless too many constructors
+     * have been cached already, or the argument types aren't visible, see
+     * {@link #isVisible(Class...)}.
+     */
+    ConstructorEntry constructor(Class<?>[] types, Constructor<?> constructor) {
+        ConstructorEntry result = new ConstructorEntry(this, types, constructor);
+
+        if (constructors.size() >= MAX_SIGNATURES || !isVisible(types))
+            return result;
+
+        ConstructorEntry previous = constructors.putIfAbsent(new Signature("<init>", types), result);
+
+        if (previous != null)
+            return previous;
+
+        // Racing threads may drop each other's probes, which is harmless
+        ConstructorEntry[] probes = constructorProbes;
+
+        if (probes.length < MAX_PROBES) {
+            ConstructorEntry[] copy = Arrays.copyOf(probes, probes.length + 1);
+            copy[probes.length] = result;
+            constructorProbes = copy;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a previously resolved constructor for the runtime types of a set of
+     * arguments, or <code>null</code> if no such constructor has been
+     * resolved yet, without allocating any objects.
+     */
+    ConstructorEntry constructorFor(Object[] args) {
+        for (ConstructorEntry entry : constructorProbes)
+            if (matches(entry.types, args))
+                return entry;
+
+        return null;
+    }
+
+    /**
+     * Whether argument values have exactly the given runtime types, where
+     * <code>null</code> values are typed {@link Reflect.NULL}.
+     */
+    private static boolean matches(Class<?>[] types, Object[] args) {
+        int length = args == null ? 0 : args.length;
+
+        if (types.length != length)
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+
+            if ((arg == null ? Reflect.NULL.class : arg.getClass()) != types[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get a previously resolved field, or <code>null</code> if no such field
+     * has been resolved yet.
+     */
+    FieldEntry field(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Cache a resolved, accessible field.
+     */
+    FieldEntry field(String name, Field field) {
+        FieldEntry result = new FieldEntry(this, field);
+        FieldEntry previous = fields.putIfAbsent(name, result);
+        return previous != null ? previous : result;
+    }
+
+    /**
+     * Whether a field name is known not to resolve.
+     */
+    boolean isMissingField(String name) {
+        return missingFields.contains(name);
+    }
+
+    /**
+     * Remember that a field name does not resolve, unless too many names have
+     * been remembered already.
+     */
+    void missingField(String name) {
+        if (missingFields.size() < MAX_MISSING_FIELDS)
+            missingFields.add(name);
+    }
+
+    /**
+     * A resolved, accessible method.
+     */
+    static final class MethodEntry {
+        final Class<?>[]             types;
+        final Method                 method;
+        final boolean                isVoid;
+
+
+
+
+
+
+
+
+
+
+
+
+
+        MethodEntry(ReflectCache cache, Class<?>[] types, Method method) {
+
+
+
+
+
+            this.types = types;
+            this.method = method;
+            this.isVoid = method.getReturnType() == void.class;
+        }
+
+        Object invoke(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return method.invoke(target, args);
+        }
+
+        int invokeInt(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return (Integer) widen(invoke(mode, target, args), int.class);
+        }
+
+        long invokeLong(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return (Long) widen(invoke(mode, target, args), long.class);
+        }
+
+        double invokeDouble(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return (Double) widen(invoke(mode, target, args), double.class);
+        }
+
+        boolean invokeBoolean(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return (Boolean) widen(invoke(mode, target, args), boolean.class);
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * A resolved, accessible constructor.
+     */
+    static final class ConstructorEntry {
+        final Class<?>[]             types;
+        final Constructor<?>         constructor;
+
+
+
+
+
+
+
+
+
+        ConstructorEntry(ReflectCache cache, Class<?>[] types, Constructor<?> constructor) {
+
+
+
+
+            this.types = types;
+            this.constructor = constructor;
+        }
+
+        Object newInstance(InvocationMode mode, Object[] args) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return constructor.newInstance(args);
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * A resolved, accessible field.
+     */
+    static final class FieldEntry {
+        final Field                  field;
+
+        // Whether the final modifier has been removed, if applicable
+        private volatile boolean     nonFinal;
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+        FieldEntry(ReflectCache cache, Field field) {
+
+
+
+            this.field = field;
+        }
+
+        /**
+         * Remove the <code>final</code> modifier from the field, if
+         * applicable, once per entry.
+         */
+        void removeFinal() throws Exception {
+            if (!nonFinal) {
+                Reflect.removeFinal(field);
+                nonFinal = true;
+            }
+        }
+
+        Object get(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.get(target);
+        }
+
+        void set(InvocationMode mode, Object target, Object value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.set(target, value);
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+        boolean getBoolean(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getBoolean(target);
+        }
+
+        void setBoolean(InvocationMode mode, Object target, boolean value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setBoolean(target, value);
+        }
+
+        byte getByte(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getByte(target);
+        }
+
+        void setByte(InvocationMode mode, Object target, byte value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setByte(target, value);
+        }
+
+        char getChar(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getChar(target);
+        }
+
+        void setChar(InvocationMode mode, Object target, char value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setChar(target, value);
+        }
+
+        short getShort(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getShort(target);
+        }
+
+        void setShort(InvocationMode mode, Object target, short value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setShort(target, value);
+        }
+
+        int getInt(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getInt(target);
+        }
+
+        void setInt(InvocationMode mode, Object target, int value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setInt(target, value);
+        }
+
+        long getLong(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getLong(target);
+        }
+
+        void setLong(InvocationMode mode, Object target, long value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setLong(target, value);
+        }
+
+        float getFloat(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getFloat(target);
+        }
+
+        void setFloat(InvocationMode mode, Object target, float value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setFloat(target, value);
+        }
+
+        double getDouble(InvocationMode mode, Object target) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+            return field.getDouble(target);
+        }
+
+        void setDouble(InvocationMode mode, Object target, double value) throws Exception {
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+            field.setDouble(target, value);
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * Apply a primitive widening conversion to a boxed value, like
+     * <code>MethodHandle.asType()</code> does.
+     */
+    private static Object widen(Object value, Class<?> type) {
+        if (value instanceof Character && type != char.class)
+            value = Integer.valueOf((Character) value);
+
+        if (type == int.class && (value instanceof Short || value instanceof Byte))
+            return ((Number) value).intValue();
+        else if (type == long.class && (value instanceof Integer || value instanceof Short || value instanceof Byte))
+            return ((Number) value).longValue();
+        else if (type == double.class && (value instanceof Float || value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte))
+            return ((Number) value).doubleValue();
+        else
+            return value;
+    }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * The accessible fields of {@link Reflect#fields()}, in declaration order,
+     * from the type up to its topmost superclass.
+     */
+    static final class FieldLayout {
+        final String[]             names;
+        final FieldEntry[]         entries;
+        final Map<String, Integer> index;
+
+        FieldLayout(Map<String, FieldEntry> fields) {
+            this.names = fields.keySet().toArray(new String[0]);
+            this.entries = fields.values().toArray(new FieldEntry[0]);
+            this.index = new HashMap<String, Integer>();
+
+            for (int i = 0; i < names.length; i++)
+                index.put(names[i], i);
+        }
+    }
+
+    /**
+     * The proxy class of a type for a set of interfaces, and the way their
+     * methods are dispatched.
+     */
+    static final class ProxyClass {
+        final Class<?>[]                interfaces;
+        final Map<Method, ProxyEntry>   dispatch;
+
+        // The constructor of the java.lang.reflect.Proxy class, if accessible
+        private volatile Constructor<?> constructor;
+        private volatile boolean        inaccessible;
+
+
+
+
+
+
+        ProxyClass(ReflectCache cache, Class<?>[] interfaces, Map<Method, ProxyEntry> dispatch) {
+
+
+
+            this.interfaces = interfaces;
+            this.dispatch = dispatch;
+        }
+
+        /**
+         * Create a new {@link Proxy} instance, calling the proxy class
+         * constructor directly, once it is known.
+         */
+        Object newProxy(InvocationHandler handler) {
+            Constructor<?> c = constructor;
+
+            if (c != null) {
+                try {
+                    return c.newInstance(handler);
+                }
+
+                // Proxy classes may be encapsulated in modules that can't be read
+                catch (IllegalAccessException e) {
+                    inaccessible();
+                }
+                catch (Exception e) {
+                    throw new ReflectException(e);
+                }
+            }
+
+            Object result = Proxy.newProxyInstance(interfaces[0].getClassLoader(), interfaces, handler);
+
+            if (c == null && !inaccessible) {
+                try {
+                    constructor = Reflect.accessible(result.getClass().getConstructor(InvocationHandler.class));
+                }
+                catch (NoSuchMethodException e) {
+                    throw new ReflectException(e);
+                }
+
+
+
+
+
+
+            }
+
+            return result;
+        }
+
+        /**
+         * Stop calling the proxy class constructor directly.
+         */
+        private void inaccessible() {
+            constructor = null;
+            inaccessible = true;
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * The way a method of a proxied interface is dispatched.
+     */
+    enum ProxyKind {
+
+        /**
+         * Invoke a method of the wrapped type that could be resolved upfront.
+         */
+        METHOD,
+
+        /**
+         * Get a property from a wrapped {@link Map}.
+         */
+        MAP_GET,
+
+        /**
+         * Put a property into a wrapped {@link Map}.
+         */
+        MAP_PUT,
+
+        /**
+         * Invoke the default method of the proxied interface.
+         */
+        DEFAULT
+    }
+
+    /**
+     * A classified method of a proxied interface.
+     */
+    static final class ProxyEntry {
+        final ProxyKind   kind;
+        final MethodEntry method;
+        final String      property;
+
+
+
+
+
+
+        ProxyEntry(ProxyKind kind, MethodEntry method, String property, Method proxied) {
+            this.kind = kind;
+            this.method = method;
+            this.property = property;
+
+
+
+
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * A method name and argument type vector used as a cache key.
+     */
+    private static final class Signature {
+        final String     name;
+        final Class<?>[] types;
+        final int        hash;
+
+        Signature(String name, Class<?>[] types) {
+            this.name = name;
+            this.types = types;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+
+            if (!(obj instanceof Signature))
+                return false;
+
+            Signature other = (Signature) obj;
+            return name.equals(other.name) && Arrays.equals(types, other.types);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.joor.ReflectCache.ProxyClass;
+import org.joor.ReflectCache.ProxyEntry;
+
+/**
+ * A factory for proxies of objects of a type, which has been set up once
+ * through {@link Reflect#proxyFactory(Class, Class...)}, and that can create
+ * proxies repeatedly, for any number of objects.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Lukas Eder
+ */
+public final class ReflectProxyFactory<P> {
+
+    private final Class<?>       type;
+    private final InvocationMode mode;
+    private final ProxyClass     proxy;
+
+    ReflectProxyFactory(Class<?> type, InvocationMode mode, ProxyClass proxy) {
+        this.type = type;
+        this.mode = mode;
+        this.proxy = proxy;
+    }
+
+    /**
+     * Create a proxy for an object, allowing to typesafely invoke methods on
+     * it using the factory's interfaces.
+     * <p>
+     * This is the prepared equivalent of {@link Reflect#as(Class, Class...)}.
+     *
+     * @param object The object, or a {@link Reflect} wrapping it
+     * @return A proxy for the object
+     */
+    @SuppressWarnings("unchecked")
+    public P as(Object object) {
+        Object o = Reflect.unwrap(object);
+
+
+
+
+
+
+
+
+
+
+        return (P) proxy.newProxy(new Handler(type, mode, proxy, o));
+    }
+
+    /**
+     * The means by which proxies invoke methods.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Class<?>       type;
+        private final InvocationMode mode;
+        private final ProxyClass     proxy;
+        private final Object         object;
+        private final boolean        isMap;
+
+        Handler(Class<?> type, InvocationMode mode, ProxyClass proxy, Object object) {
+            this.type = type;
+            this.mode = mode;
+            this.proxy = proxy;
+            this.object = object;
+            this.isMap = (object instanceof Map);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            ProxyEntry entry = proxy.dispatch.get(method);
+
+            if (entry != null) {
+                switch (entry.kind) {
+
+                    // Methods that could be resolved upfront are invoked directly
+                    case METHOD:
+                        try {
+                            return entry.method.invoke(mode, object, args);
+                        }
+                        catch (Exception e) {
+                            throw new ReflectException(e);
+                        }
+
+                    // [#14] Emulate POJO behaviour on wrapped map objects
+                    case MAP_GET:
+                        if (isMap)
+                            return ((Map<String, Object>) object).get(entry.property);
+                        else
+                            return missing(p, entry, method, args);
+
+                    case MAP_PUT:
+                        if (isMap) {
+                            ((Map<String, Object>) object).put(entry.property, args[0]);
+                            return null;
+                        }
+                        else
+                            return missing(p, entry, method, args);
+                }
+
+
+
+
+
+            }
+
+            String name = method.getName();
+
+            // Actual method name matches always come first
+            try {
+                return Reflect.on(type, object, mode).call(name, args).get();
+            }
+
+            // [#14] Emulate POJO behaviour on wrapped map objects
+            catch (ReflectException e) {
+                if (isMap) {
+                    Map<String, Object> map = (Map<String, Object>) object;
+                    int length = (args == null ? 0 : args.length);
+
+                    if (length == 0 && name.startsWith("get")) {
+                        return map.get(Reflect.property(name.substring(3)));
+                    }
+                    else if (length == 0 && name.startsWith("is")) {
+                        return map.get(Reflect.property(name.substring(2)));
+                    }
+                    else if (length == 1 && name.startsWith("set")) {
+                        map.put(Reflect.property(name.substring(3)), args[0]);
+                        return null;
+                    }
+                }
+
+
+
+
+
+
+
+
+
+
+
+                throw e;
+            }
+        }
+
+        /**
+         * Invoke a getter or setter that the wrapped type doesn't have, on an
+         * object that isn't a {@link Map}, which is possible only if the
+         * proxied interface has a default implementation.
+         */
+        private Object missing(Object p, ProxyEntry entry, Method method, Object[] args) throws Throwable {
+
+
+
+
+
+            throw new ReflectException(new NoSuchMethodException("No similar method " + method.getName() + " with params "
+                + Arrays.toString(method.getParameterTypes()) + " could be found on type " + type + "."));
+        }
+    }
+}
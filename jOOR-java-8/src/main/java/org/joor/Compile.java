@@ -17,24 +17,46 @@ package org.joor;
 
 // ...
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
@@ -53,6 +75,50 @@ import javax.tools.ToolProvider;
  */
 class Compile {
 
+    /**
+     * Compiled classes by {@link #key(Map, CompileOptions, ClassLoader)}.
+     */
+    static final ConcurrentMap<String, CacheReference> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link #CACHE} entries whose classes have been garbage collected.
+     */
+    private static final ReferenceQueue<Map<String, byte[]>> CLEARED = new ReferenceQueue<>();
+
+    /**
+     * The header of files in {@link CompileOptions#cacheDirectory}.
+     */
+    static final int MAGIC = 0x6A4F4F52;
+
+    /**
+     * The age after which temporary files in a
+     * {@link CompileOptions#cacheDirectory} are assumed to have been left
+     * behind by an interrupted write, rather than being written concurrently.
+     */
+    private static final long STALE_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * The cache directories from which stale temporary files have been
+     * removed by this JVM.
+     */
+    private static final Set<Path> CLEANED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Idle file managers, see {@link #acquire(JavaCompiler)}.
+     */
+    private static final BlockingQueue<StandardJavaFileManager> FILE_MANAGERS = new ArrayBlockingQueue<>(
+        Runtime.getRuntime().availableProcessors()
+    );
+
+    private static volatile JavaCompiler compiler;
+
+    /**
+     * Class paths by class loader, see {@link #classpath(ClassLoader)}.
+     */
+    private static final Map<ClassLoader, Classpath> CLASSPATHS = new WeakHashMap<>();
+
+    private static final URL[] NO_URLS = {};
+
     static Class<?> compile(String className, String content, CompileOptions compileOptions) {
         return compile(className, content, compileOptions, true);
     }
@@ -67,64 +133,26 @@ class Compile {
             return cl.loadClass(className);
         }
         catch (ClassNotFoundException ignore) {
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            try {
+                Map<String, byte[]> classes = classes(className, content, compileOptions, cl, expectResult);
 
-            if (compiler == null)
-                throw new ReflectException("No compiler was provided by ToolProvider.getSystemJavaCompiler(). Make sure the jdk.compiler module is available.");
+                if (classes == null)
+                    return null;
 
-            try {
-                ClassFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-
-                List<CharSequenceJavaFileObject> files = new ArrayList<>();
-                files.add(new CharSequenceJavaFileObject(className, content));
-                StringWriter out = new StringWriter();
-
-                List<String> options = new ArrayList<>(compileOptions.options);
-                if (!options.contains("-classpath")) {
-                    StringBuilder classpath = new StringBuilder();
-                    String separator = System.getProperty("path.separator");
-                    String cp = System.getProperty("java.class.path");
-                    String mp = System.getProperty("jdk.module.path");
-
-                    if (cp != null && !"".equals(cp))
-                        classpath.append(cp);
-                    if (mp != null && !"".equals(mp))
-                        classpath.append(mp);
-
-                    if (cl instanceof URLClassLoader) {
-                        for (URL url : ((URLClassLoader) cl).getURLs()) {
-                            if (classpath.length() > 0)
-                                classpath.append(separator);
-
-                            if ("file".equals(url.getProtocol()))
-                                classpath.append(new File(url.toURI()));
-                        }
-                    }
-
-                    options.addAll(Arrays.asList("-classpath", classpath.toString()));
+                Class<?> result = null;
+
+                // This works if we have private-access to the interfaces in the class hierarchy
+                if (Reflect.CACHED_LOOKUP_CONSTRUCTOR != null) {
+                    result = loadAndReturnMainClass(classes, className,
+                        (name, bytes) -> Reflect.on(cl).call("defineClass", name, bytes, 0, bytes.length).get());
                 }
 
-                CompilationTask task = compiler.getTask(out, fileManager, null, options, null, files);
 
-                if (!compileOptions.processors.isEmpty())
-                    task.setProcessors(compileOptions.processors);
 
-                task.call();
 
-                if (fileManager.isEmpty()) {
-                    if (!expectResult)
-                        return null;
 
-                    throw new ReflectException("Compilation error: " + out);
-                }
 
-                Class<?> result = null;
 
-                // This works if we have private-access to the interfaces in the class hierarchy
-                if (Reflect.CACHED_LOOKUP_CONSTRUCTOR != null) {
-                    result = fileManager.loadAndReturnMainClass(className,
-                        (name, bytes) -> Reflect.on(cl).call("defineClass", name, bytes, 0, bytes.length).get());
-                }
 
 
 
@@ -139,13 +167,69 @@ class Compile {
 
 
 
+                return result;
+            }
+            catch (ReflectException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new ReflectException("Error while compiling " + className, e);
+            }
+        }
+    }
+
+    static Map<String, Class<?>> compileAll(Map<String, ? extends CharSequence> sources, CompileOptions compileOptions) {
+        Lookup lookup = MethodHandles.lookup();
+        ClassLoader cl = compileOptions.classLoader != null
+            ? compileOptions.classLoader
+            : lookup.lookupClass().getClassLoader();
+
+        Map<String, Class<?>> previous = new LinkedHashMap<>();
+        Map<String, CharSequence> compiled = new LinkedHashMap<>();
+
+        for (Entry<String, ? extends CharSequence> source : sources.entrySet()) {
+            String className = source.getKey();
+            Class<?> c = load(cl, className);
+
+            if (c != null)
+                previous.put(className, c);
+
+            // Classes that have been loaded previously are compiled again only
+            // if javac can't read them from the class path, as the other
+            // classes may reference them
+            if (c == null || cl.getResource(className.replace('.', '/') + ".class") == null)
+                compiled.put(className, source.getValue());
+        }
 
+        if (previous.size() == sources.size())
+            return previous;
 
+        try {
+            Map<String, byte[]> classes;
 
+            try {
+                classes = new LinkedHashMap<>(classes(compiled, compileOptions, cl, true));
+            }
 
+            // javac may not see all the classes that the class loader sees, in
+            // which case the previously loaded classes are compiled again, too
+            catch (ReflectException e) {
+                if (compiled.size() == sources.size())
+                    throw e;
 
+                classes = new LinkedHashMap<>(classes(sources, compileOptions, cl, true));
+            }
 
+            // Classes that have been loaded previously are not defined again
+            classes.keySet().removeIf(name -> load(cl, name) != null);
+            Map<String, Class<?>> loaded = Collections.emptyMap();
 
+            // All classes are defined by the same class loader, such that
+            // cross-references between the compilation units resolve
+            if (Reflect.CACHED_LOOKUP_CONSTRUCTOR != null) {
+                loaded = load(classes,
+                    (name, bytes) -> Reflect.on(cl).call("defineClass", name, bytes, 0, bytes.length).get());
+            }
 
 
 
@@ -163,20 +247,492 @@ class Compile {
 
 
 
+            Map<String, Class<?>> result = new LinkedHashMap<>();
 
+            for (String className : sources.keySet()) {
+                Class<?> c = previous.get(className);
 
+                if (c == null)
+                    c = loaded.get(className);
 
-                return result;
+                // Some classes may have been loaded concurrently
+                result.put(className, c != null ? c : cl.loadClass(className));
             }
-            catch (ReflectException e) {
-                throw e;
+
+            return result;
+        }
+        catch (ReflectException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ReflectException("Error while compiling " + sources.keySet(), e);
+        }
+    }
+
+    /**
+     * Load a class, or return <code>null</code> if the class loader doesn't
+     * know it.
+     */
+    private static Class<?> load(ClassLoader cl, String className) {
+        try {
+            return cl.loadClass(className);
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Get the compiled classes of a compilation unit from the cache, or
+     * compile it in memory, without loading any classes.
+     * <p>
+     * The cache is keyed by a hash of the compilation unit and everything else
+     * that may affect the produced bytecode, see
+     * {@link #key(Map, CompileOptions, ClassLoader)}. Identical compilation
+     * units are thus compiled only once, even if they are loaded by several
+     * class loaders with the same class path. If a
+     * {@link CompileOptions#cacheDirectory(Path)} is given, then the compiled
+     * classes are also cached there, across JVM runs. Compilations with
+     * annotation processors are not cached.
+     *
+     * @return The compiled classes by class name, or <code>null</code> if
+     *         nothing was compiled, and no result was expected.
+     */
+    static Map<String, byte[]> classes(String className, String content, CompileOptions compileOptions, ClassLoader cl, boolean expectResult) throws Exception {
+        return classes(Collections.singletonMap(className, content), compileOptions, cl, expectResult);
+    }
+
+    /**
+     * Get the compiled classes of several compilation units from the cache, or
+     * compile them in memory, in a single compilation task, without loading
+     * any classes.
+     *
+     * @return The compiled classes by class name, or <code>null</code> if
+     *         nothing was compiled, and no result was expected.
+     * @see #classes(String, String, CompileOptions, ClassLoader, boolean)
+     */
+    static Map<String, byte[]> classes(Map<String, ? extends CharSequence> sources, CompileOptions compileOptions, ClassLoader cl, boolean expectResult) throws Exception {
+
+        // Annotation processors may have side effects, which must not be skipped
+        if (!compileOptions.processors.isEmpty()) {
+            ClassFileManager fileManager = javac(sources, compileOptions, cl, expectResult);
+            return fileManager == null ? null : Collections.unmodifiableMap(fileManager.classes());
+        }
+
+        expunge();
+        String key = key(sources, compileOptions, cl);
+        CacheReference reference = CACHE.get(key);
+        Map<String, byte[]> result = reference == null ? null : reference.get();
+
+        if (result == null) {
+            Path file = compileOptions.cacheDirectory == null
+                ? null
+                : compileOptions.cacheDirectory.resolve(key + ".classes");
+
+            if (file != null)
+                result = read(file);
+
+            if (result == null) {
+                ClassFileManager fileManager = javac(sources, compileOptions, cl, expectResult);
+
+                if (fileManager == null)
+                    return null;
+
+                result = Collections.unmodifiableMap(fileManager.classes());
+
+                if (file != null)
+                    write(file, result);
             }
-            catch (Exception e) {
-                throw new ReflectException("Error while compiling " + className, e);
+
+            CACHE.put(key, new CacheReference(key, result));
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the {@link #CACHE} entries whose classes have been garbage
+     * collected.
+     */
+    private static void expunge() {
+        for (Reference<?> r; (r = CLEARED.poll()) != null;)
+            CACHE.remove(((CacheReference) r).key, r);
+    }
+
+    /**
+     * A {@link #CACHE} value, which knows its key, such that it can be
+     * removed once it has been cleared.
+     */
+    static final class CacheReference extends SoftReference<Map<String, byte[]>> {
+        final String key;
+
+        CacheReference(String key, Map<String, byte[]> classes) {
+            super(classes, CLEARED);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Read compiled classes from a cache file, or return <code>null</code> if
+     * the file doesn't exist, or cannot be read.
+     */
+    private static Map<String, byte[]> read(Path file) {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long size = Files.size(file);
+
+            if (in.readInt() != MAGIC)
+                return null;
+
+            Map<String, byte[]> result = new LinkedHashMap<>();
+
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                int length = in.readInt();
+
+                // Don't allocate arrays for corrupt lengths
+                if (length < 0 || length > size)
+                    return null;
+
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                result.put(name, bytes);
+            }
+
+            return Collections.unmodifiableMap(result);
+        }
+
+        // A corrupt or concurrently deleted file is treated like a cache miss
+        catch (IOException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Write compiled classes to a cache file.
+     * <p>
+     * The classes are first written to a temporary file in the same
+     * directory, which is then atomically moved to its final name, such that
+     * other JVMs sharing the directory never read partially written files.
+     * Failure to write the file is ignored.
+     */
+    private static void write(Path file, Map<String, byte[]> classes) {
+        Path tmp = null;
+
+        try {
+            Files.createDirectories(file.getParent());
+            clean(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(classes.size());
+
+                for (Entry<String, byte[]> entry : classes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ignore) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                }
+                catch (IOException ignored) {}
             }
         }
     }
 
+    /**
+     * Remove the temporary files that interrupted writes have left behind in
+     * a cache directory, once per directory and JVM.
+     */
+    private static void clean(Path directory) {
+        if (!CLEANED.add(directory))
+            return;
+
+        long stale = System.currentTimeMillis() - STALE_MILLIS;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tmp")) {
+            for (Path tmp : files) {
+                try {
+                    if (Files.getLastModifiedTime(tmp).toMillis() < stale)
+                        Files.deleteIfExists(tmp);
+                }
+
+                // Another JVM may have removed the file already
+                catch (IOException ignore) {}
+            }
+        }
+        catch (IOException ignore) {}
+    }
+
+    /**
+     * The hash of compilation units, their options, their class path and the
+     * JDK version.
+     */
+    static String key(Map<String, ? extends CharSequence> sources, CompileOptions compileOptions, ClassLoader cl) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        update(digest, System.getProperty("java.version"));
+
+        // The same compilation units produce the same key, in any order
+        for (Entry<String, ? extends CharSequence> entry : new TreeMap<>(sources).entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue().toString());
+        }
+
+        for (String option : compileOptions.options)
+            update(digest, option);
+
+        // The same sources may compile differently against other dependencies
+        if (!compileOptions.options.contains("-classpath"))
+            update(digest, classpath(cl));
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest())
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, String string) {
+        if (string != null)
+            digest.update(string.getBytes(StandardCharsets.UTF_8));
+
+        // Separate the inputs, such that they can't be confused with each other
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Compile compilation units in memory, without loading any classes.
+     *
+     * @return The compiled classes, or <code>null</code> if nothing was
+     *         compiled, and no result was expected.
+     */
+    static ClassFileManager javac(Map<String, ? extends CharSequence> sources, CompileOptions compileOptions, ClassLoader cl, boolean expectResult) throws Exception {
+        JavaCompiler compiler = compiler();
+
+        if (compiler == null)
+            throw new ReflectException("No compiler was provided by ToolProvider.getSystemJavaCompiler(). Make sure the jdk.compiler module is available.");
+
+        StandardJavaFileManager standardManager = acquire(compiler);
+        ClassFileManager fileManager = new ClassFileManager(standardManager);
+        boolean reusable = false;
+
+        List<CharSequenceJavaFileObject> files = new ArrayList<>();
+        for (Entry<String, ? extends CharSequence> entry : sources.entrySet())
+            files.add(new CharSequenceJavaFileObject(entry.getKey(), entry.getValue()));
+        StringWriter out = new StringWriter();
+
+        List<String> options = new ArrayList<>(compileOptions.options);
+        if (!options.contains("-classpath"))
+            options.addAll(Arrays.asList("-classpath", classpath(cl)));
+
+        try {
+            CompilationTask task = compiler.getTask(out, fileManager, null, options, null, files);
+
+            if (!compileOptions.processors.isEmpty())
+                task.setProcessors(compileOptions.processors);
+
+            task.call();
+            reusable = isReusable(standardManager, options);
+        }
+        finally {
+            release(standardManager, reusable);
+        }
+
+        if (fileManager.isEmpty()) {
+            if (!expectResult)
+                return null;
+
+            throw new ReflectException("Compilation error: " + out);
+        }
+
+        return fileManager;
+    }
+
+    /**
+     * Get the class path for compilations whose classes are loaded by a class
+     * loader.
+     * <p>
+     * The class path is computed only once per class loader, and recomputed
+     * only if the class path system properties or the loader's URLs change.
+     */
+    static String classpath(ClassLoader cl) throws Exception {
+        String cp = System.getProperty("java.class.path");
+        String mp = System.getProperty("jdk.module.path");
+        URL[] urls = cl instanceof URLClassLoader ? ((URLClassLoader) cl).getURLs() : NO_URLS;
+        Classpath result;
+
+        synchronized (CLASSPATHS) {
+            result = CLASSPATHS.get(cl);
+        }
+
+        if (result == null || !result.matches(cp, mp, urls)) {
+            result = new Classpath(cp, mp, urls);
+
+            synchronized (CLASSPATHS) {
+                CLASSPATHS.put(cl, result);
+            }
+        }
+
+        return result.value;
+    }
+
+    /**
+     * A computed class path, and the inputs it was computed from.
+     */
+    private static final class Classpath {
+        final String cp;
+        final String mp;
+        final URL[]  urls;
+        final String value;
+
+        Classpath(String cp, String mp, URL[] urls) throws Exception {
+            this.cp = cp;
+            this.mp = mp;
+            this.urls = urls;
+
+            StringBuilder classpath = new StringBuilder();
+            String separator = System.getProperty("path.separator");
+
+            if (cp != null && !"".equals(cp))
+                classpath.append(cp);
+            if (mp != null && !"".equals(mp)) {
+                if (classpath.length() > 0)
+                    classpath.append(separator);
+
+                classpath.append(mp);
+            }
+
+            for (URL url : urls) {
+                if (!"file".equals(url.getProtocol()))
+                    continue;
+
+                if (classpath.length() > 0)
+                    classpath.append(separator);
+
+                classpath.append(new File(url.toURI()));
+            }
+
+            this.value = classpath.toString();
+        }
+
+        boolean matches(String otherCp, String otherMp, URL[] otherUrls) {
+            if (!Objects.equals(cp, otherCp) || !Objects.equals(mp, otherMp) || urls.length != otherUrls.length)
+                return false;
+
+            // URL.equals() may resolve host names. URLClassLoader returns the
+            // same URL instances, as long as they haven't changed.
+            for (int i = 0; i < urls.length; i++)
+                if (urls[i] != otherUrls[i] && !urls[i].toString().equals(otherUrls[i].toString()))
+                    return false;
+
+            return true;
+        }
+    }
+
+    /**
+     * Get the system compiler, which is thread-safe, and can thus be shared.
+     */
+    private static JavaCompiler compiler() {
+        JavaCompiler result = compiler;
+
+        if (result == null)
+            compiler = result = ToolProvider.getSystemJavaCompiler();
+
+        return result;
+    }
+
+    /**
+     * Get an idle file manager from the pool, or create a new one.
+     * <p>
+     * File managers are not thread-safe, but they are expensive to create, as
+     * they index the platform classes and class path archives on first use.
+     * Each compilation thus borrows a file manager exclusively, and returns it
+     * to the pool through {@link #release(StandardJavaFileManager, boolean)}.
+     */
+    private static StandardJavaFileManager acquire(JavaCompiler compiler) {
+        StandardJavaFileManager result = FILE_MANAGERS.poll();
+        return result != null ? result : compiler.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Return a file manager to the pool, or close it, if it can't be reused,
+     * or if the pool is full.
+     */
+    private static void release(StandardJavaFileManager fileManager, boolean reusable) {
+        if (!reusable || !FILE_MANAGERS.offer(fileManager)) {
+            try {
+                fileManager.close();
+            }
+            catch (IOException ignore) {}
+        }
+    }
+
+    /**
+     * Whether a file manager can be reused by other compilations.
+     * <p>
+     * Each compilation sets the <code>-classpath</code>, but other file
+     * manager options, such as <code>--module-path</code> or
+     * <code>-encoding</code>, would leak into subsequent compilations.
+     */
+    private static boolean isReusable(StandardJavaFileManager fileManager, List<String> options) {
+        for (int i = 0; i < options.size(); i++) {
+            if ("-classpath".equals(options.get(i)))
+                i++;
+            else if (fileManager.isSupportedOption(options.get(i)) >= 0)
+                return false;
+        }
+
+        return true;
+    }
+
 
 
 
@@ -257,43 +813,47 @@ class Compile {
 
             return classes;
         }
+    }
 
-        Class<?> loadAndReturnMainClass(String mainClassName, ThrowingBiFunction<String, byte[], Class<?>> definer) throws Exception {
-            Class<?> result = null;
-
-            // [#117] We don't know the subclass hierarchy of the top level
-            //        classes in the compilation unit, and we can't find out
-            //        without either:
-            //
-            //        - class loading them (which fails due to NoClassDefFoundError)
-            //        - using a library like ASM (which is a big and painful dependency)
-            //
-            //        Simple workaround: try until it works, in O(n^2), where n
-            //        can be reasonably expected to be small.
-            Deque<Entry<String, byte[]>> queue = new ArrayDeque<>(classes().entrySet());
-            int n1 = queue.size();
-
-            // Try at most n times
-            for (int i1 = 0; i1 < n1 && !queue.isEmpty(); i1++) {
-                int n2 = queue.size();
-
-                for (int i2 = 0; i2 < n2; i2++) {
-                    Entry<String, byte[]> entry = queue.pop();
-
-                    try {
-                        Class<?> c = definer.apply(entry.getKey(), entry.getValue());
-
-                        if (mainClassName.equals(entry.getKey()))
-                            result = c;
-                    }
-                    catch (ReflectException e) {
-                        queue.offer(entry);
-                    }
+    static Class<?> loadAndReturnMainClass(Map<String, byte[]> classes, String mainClassName, ThrowingBiFunction<String, byte[], Class<?>> definer) throws Exception {
+        return load(classes, definer).get(mainClassName);
+    }
+
+    /**
+     * Define compiled classes, returning the ones that could be defined.
+     */
+    static Map<String, Class<?>> load(Map<String, byte[]> classes, ThrowingBiFunction<String, byte[], Class<?>> definer) throws Exception {
+        Map<String, Class<?>> result = new LinkedHashMap<>();
+
+        // [#117] We don't know the subclass hierarchy of the top level
+        //        classes in the compilation unit, and we can't find out
+        //        without either:
+        //
+        //        - class loading them (which fails due to NoClassDefFoundError)
+        //        - using a library like ASM (which is a big and painful dependency)
+        //
+        //        Simple workaround: try until it works, in O(n^2), where n
+        //        can be reasonably expected to be small.
+        Deque<Entry<String, byte[]>> queue = new ArrayDeque<>(classes.entrySet());
+        int n1 = queue.size();
+
+        // Try at most n times
+        for (int i1 = 0; i1 < n1 && !queue.isEmpty(); i1++) {
+            int n2 = queue.size();
+
+            for (int i2 = 0; i2 < n2; i2++) {
+                Entry<String, byte[]> entry = queue.pop();
+
+                try {
+                    result.put(entry.getKey(), definer.apply(entry.getKey(), entry.getValue()));
+                }
+                catch (ReflectException e) {
+                    queue.offer(entry);
                 }
             }
-
-            return result;
         }
+
+        return result;
     }
 
     @FunctionalInterface
@@ -15,6 +15,7 @@ package org.joor;
 
 
 
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import java.util.Collections;
@@ -30,11 +31,13 @@ public final class CompileOptions {
     final List<? extends Processor> processors;
     final List<String>              options;
     final ClassLoader               classLoader;
+    final Path                      cacheDirectory;
 
     public CompileOptions() {
         this(
             Collections.emptyList(),
             Collections.emptyList(),
+            null,
             null
         );
     }
@@ -42,11 +45,13 @@ public final class CompileOptions {
     private CompileOptions(
         List<? extends Processor> processors,
         List<String> options,
-        ClassLoader classLoader
+        ClassLoader classLoader,
+        Path cacheDirectory
     ) {
         this.processors = processors;
         this.options = options;
         this.classLoader = classLoader;
+        this.cacheDirectory = cacheDirectory;
     }
 
     public final CompileOptions processors(Processor... newProcessors) {
@@ -54,7 +59,7 @@ public final class CompileOptions {
     }
 
     public final CompileOptions processors(List<? extends Processor> newProcessors) {
-        return new CompileOptions(newProcessors, options, classLoader);
+        return new CompileOptions(newProcessors, options, classLoader, cacheDirectory);
     }
 
     public final CompileOptions options(String... newOptions) {
@@ -62,7 +67,7 @@ public final class CompileOptions {
     }
 
     public final CompileOptions options(List<String> newOptions) {
-        return new CompileOptions(processors, newOptions, classLoader);
+        return new CompileOptions(processors, newOptions, classLoader, cacheDirectory);
     }
 
     final boolean hasOption(String opt) {
@@ -74,7 +79,20 @@ public final class CompileOptions {
     }
 
     public final CompileOptions classLoader(ClassLoader newClassLoader) {
-        return new CompileOptions(processors, options, newClassLoader);
+        return new CompileOptions(processors, options, newClassLoader, cacheDirectory);
+    }
+
+    /**
+     * A directory in which compiled classes are cached across JVM runs.
+     * <p>
+     * The directory can be shared by several JVMs, as cache entries are
+     * written atomically. Entries are keyed by a hash of the compilation unit,
+     * the options, the class path and the JDK version. Compilations with
+     * annotation processors are never cached, as the processors may have side
+     * effects.
+     */
+    public final CompileOptions cacheDirectory(Path newCacheDirectory) {
+        return new CompileOptions(processors, options, classLoader, newCacheDirectory);
     }
 }
 
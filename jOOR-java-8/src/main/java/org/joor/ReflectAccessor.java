@@ -0,0 +1,462 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * A generated class that accesses the members of a type directly, by member
+ * index, along with the indexes of the members that it can access.
+ * <p>
+ * The class is generated as Java source code, which is compiled using
+ * {@link Compile}, and loaded by its own class loader, whose parent is the
+ * type's class loader. Such a class can only access public members of public
+ * types, so other types and members are not eligible. Members that fail to
+ * compile for any other reason are left out of the class.
+ * <p>
+ * The class consists of public static methods only, which are called through
+ * method handles, such that it doesn't need to implement any jOOR type.
+ *
+ * @author Lukas Eder
+ */
+final class ReflectAccessor {
+
+    /**
+     * The accessor of types that are not eligible, or that failed to compile.
+     */
+    static final ReflectAccessor      NONE     = new ReflectAccessor(null, null, null, null,
+        Collections.<Method>emptyList(),
+        Collections.<Constructor<?>>emptyList(),
+        Collections.<Field>emptyList(),
+        Collections.<Field>emptyList());
+
+    private static final String       PACKAGE  = "org.joor.generated";
+
+    // Compilations that fail for other members than the ones reported are
+    // given up on after a few attempts
+    private static final int          ATTEMPTS = 3;
+    private static final Pattern      ERROR    = Pattern.compile("\\.java:(\\d+): error");
+
+    private final MethodHandle                 invoke;
+    private final MethodHandle                 newInstance;
+    private final MethodHandle                 get;
+    private final MethodHandle                 set;
+    private final Map<Method, Integer>         methods;
+    private final Map<Constructor<?>, Integer> constructors;
+    private final Map<Field, Integer>          getters;
+    private final Map<Field, Integer>          setters;
+
+    private ReflectAccessor(
+        MethodHandle invoke,
+        MethodHandle newInstance,
+        MethodHandle get,
+        MethodHandle set,
+        List<Method> methods,
+        List<Constructor<?>> constructors,
+        List<Field> getters,
+        List<Field> setters
+    ) {
+        this.invoke = invoke;
+        this.newInstance = newInstance;
+        this.get = get;
+        this.set = set;
+        this.methods = indexes(methods);
+        this.constructors = indexes(constructors);
+        this.getters = indexes(getters);
+        this.setters = indexes(setters);
+    }
+
+    private static <K> Map<K, Integer> indexes(List<K> list) {
+        Map<K, Integer> result = new HashMap<>();
+
+        for (int i = 0; i < list.size(); i++)
+            result.put(list.get(i), i);
+
+        return result;
+    }
+
+    /**
+     * The index of a method, or <code>-1</code> if it cannot be accessed.
+     */
+    int method(Method method) {
+        return index(methods, method);
+    }
+
+    /**
+     * The index of a constructor, or <code>-1</code> if it cannot be accessed.
+     */
+    int constructor(Constructor<?> constructor) {
+        return index(constructors, constructor);
+    }
+
+    /**
+     * The index of a readable field, or <code>-1</code> if it cannot be read.
+     */
+    int getter(Field field) {
+        return index(getters, field);
+    }
+
+    /**
+     * The index of a writable field, or <code>-1</code> if it cannot be
+     * written.
+     */
+    int setter(Field field) {
+        return index(setters, field);
+    }
+
+    private static <K> int index(Map<K, Integer> map, K key) {
+        Integer result = map.get(key);
+        return result == null ? -1 : result;
+    }
+
+    /**
+     * Invoke a method. The arguments must match the method's parameter types
+     * exactly, with primitive types boxed.
+     */
+    Object invoke(int method, Object target, Object[] args) throws Throwable {
+        return (Object) invoke.invokeExact(method, target, args);
+    }
+
+    /**
+     * Invoke a constructor. The arguments must match the constructor's
+     * parameter types exactly, with primitive types boxed.
+     */
+    Object newInstance(int constructor, Object[] args) throws Throwable {
+        return (Object) newInstance.invokeExact(constructor, args);
+    }
+
+    /**
+     * Read a field.
+     */
+    Object get(int field, Object target) throws Throwable {
+        return (Object) get.invokeExact(field, target);
+    }
+
+    /**
+     * Write a field. The value must match the field's type exactly, with
+     * primitive types boxed.
+     */
+    void set(int field, Object target, Object value) throws Throwable {
+        set.invokeExact(field, target, value);
+    }
+
+    /**
+     * Generate, compile and load the accessor of a type, or return
+     * {@link #NONE} if this isn't possible.
+     */
+    static ReflectAccessor of(Class<?> type) {
+        if (type.isArray() || !isAccessible(type))
+            return NONE;
+
+        List<Method> methods = new ArrayList<>();
+        List<Constructor<?>> constructors = new ArrayList<>();
+        List<Field> getters = new ArrayList<>();
+        List<Field> setters = new ArrayList<>();
+
+        for (Method method : type.getMethods())
+            if (!method.isBridge() && !method.isSynthetic() && isAccessible(method.getParameterTypes()))
+                methods.add(method);
+
+        if (!Modifier.isAbstract(type.getModifiers()) && (type.getDeclaringClass() == null || Modifier.isStatic(type.getModifiers())))
+            for (Constructor<?> constructor : type.getConstructors())
+                if (!constructor.isSynthetic() && isAccessible(constructor.getParameterTypes()))
+                    constructors.add(constructor);
+
+        for (Field field : type.getFields()) {
+
+            // Shadowed fields can only be accessed through their declaring class
+            if (field.isSynthetic() || !isAccessible(field.getDeclaringClass()))
+                continue;
+
+            getters.add(field);
+
+            if (!Modifier.isFinal(field.getModifiers()) && isAccessible(field.getType()))
+                setters.add(field);
+        }
+
+        String className = type.getName().replace('.', '_').replace('$', '_') + "_Accessor";
+        String name = PACKAGE + "." + className;
+        ClassLoader cl = type.getClassLoader();
+
+        try {
+            for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+                List<Runnable> removals = new ArrayList<>();
+                String content = source(type, className, methods, constructors, getters, setters, removals);
+
+                try {
+                    byte[] bytes = Compile.classes(name, content,
+                        new CompileOptions().options("-proc:none", "-nowarn").classLoader(cl), cl, true).get(name);
+
+                    if (bytes == null)
+                        return NONE;
+
+                    Class<?> c = new AccessorClassLoader(cl).define(name, bytes);
+                    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+                    return new ReflectAccessor(
+                        lookup.findStatic(c, "invoke", methodType(Object.class, int.class, Object.class, Object[].class)),
+                        lookup.findStatic(c, "newInstance", methodType(Object.class, int.class, Object[].class)),
+                        lookup.findStatic(c, "get", methodType(Object.class, int.class, Object.class)),
+                        lookup.findStatic(c, "set", methodType(void.class, int.class, Object.class, Object.class)),
+                        methods, constructors, getters, setters
+                    );
+                }
+
+                // Leave out the members whose code failed to compile, and
+                // try again with the remaining members
+                catch (ReflectException e) {
+                    Set<Runnable> failed = failed(e.getMessage(), removals);
+
+                    if (failed.isEmpty())
+                        return NONE;
+
+                    for (Runnable removal : failed)
+                        removal.run();
+                }
+            }
+
+            return NONE;
+        }
+
+        // The compiler may be unavailable, or the type may not be on its
+        // class path, etc. In that case, method handles are used instead.
+        catch (Exception | LinkageError ignore) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Generate the source code of the accessor class.
+     *
+     * @param removals Populated with a removal of the accessed member for
+     *            each line of the source code, or <code>null</code> for
+     *            lines that don't access any member.
+     */
+    private static String source(
+        Class<?> type,
+        String className,
+        List<Method> methods,
+        List<Constructor<?>> constructors,
+        List<Field> getters,
+        List<Field> setters,
+        List<Runnable> removals
+    ) {
+        String typeName = type.getCanonicalName();
+        List<String> lines = new ArrayList<>();
+
+        add(lines, removals, "package " + PACKAGE + ";");
+        add(lines, removals, "");
+        add(lines, removals, "@SuppressWarnings(\"all\")");
+        add(lines, removals, "public final class " + className + " {");
+        add(lines, removals, "    public static Object invoke(int method, Object target, Object[] args) throws Throwable {");
+        add(lines, removals, "        switch (method) {");
+
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            StringBuilder line = new StringBuilder("            case ").append(i).append(": ");
+
+            if (method.getReturnType() != void.class)
+                line.append("return ");
+
+            if (Modifier.isStatic(method.getModifiers()))
+                line.append(isAccessible(method.getDeclaringClass()) ? method.getDeclaringClass().getCanonicalName() : typeName);
+            else
+                line.append("((").append(typeName).append(") target)");
+
+            line.append('.').append(method.getName()).append('(').append(arguments(method.getParameterTypes())).append(");");
+
+            if (method.getReturnType() == void.class)
+                line.append(" return null;");
+
+            lines.add(line.toString());
+            removals.add(() -> methods.remove(method));
+        }
+
+        add(lines, removals, "            default: throw new IllegalArgumentException(\"Unknown method: \" + method);");
+        add(lines, removals, "        }");
+        add(lines, removals, "    }");
+        add(lines, removals, "");
+        add(lines, removals, "    public static Object newInstance(int constructor, Object[] args) throws Throwable {");
+        add(lines, removals, "        switch (constructor) {");
+
+        for (int i = 0; i < constructors.size(); i++) {
+            Constructor<?> constructor = constructors.get(i);
+
+            lines.add("            case " + i + ": return new " + typeName + "(" + arguments(constructor.getParameterTypes()) + ");");
+            removals.add(() -> constructors.remove(constructor));
+        }
+
+        add(lines, removals, "            default: throw new IllegalArgumentException(\"Unknown constructor: \" + constructor);");
+        add(lines, removals, "        }");
+        add(lines, removals, "    }");
+        add(lines, removals, "");
+        add(lines, removals, "    public static Object get(int field, Object target) {");
+        add(lines, removals, "        switch (field) {");
+
+        for (int i = 0; i < getters.size(); i++) {
+            Field field = getters.get(i);
+
+            lines.add("            case " + i + ": return " + owner(field) + "." + field.getName() + ";");
+            removals.add(() -> getters.remove(field));
+        }
+
+        add(lines, removals, "            default: throw new IllegalArgumentException(\"Unknown field: \" + field);");
+        add(lines, removals, "        }");
+        add(lines, removals, "    }");
+        add(lines, removals, "");
+        add(lines, removals, "    public static void set(int field, Object target, Object value) {");
+        add(lines, removals, "        switch (field) {");
+
+        for (int i = 0; i < setters.size(); i++) {
+            Field field = setters.get(i);
+
+            lines.add("            case " + i + ": " + owner(field) + "." + field.getName() + " = " + argument(field.getType(), "value") + "; return;");
+            removals.add(() -> setters.remove(field));
+        }
+
+        add(lines, removals, "            default: throw new IllegalArgumentException(\"Unknown field: \" + field);");
+        add(lines, removals, "        }");
+        add(lines, removals, "    }");
+        add(lines, removals, "}");
+
+        return String.join("\n", lines) + "\n";
+    }
+
+    private static void add(List<String> lines, List<Runnable> removals, String line) {
+        lines.add(line);
+        removals.add(null);
+    }
+
+    /**
+     * The removals of the members whose lines are reported by compilation
+     * errors, or an empty set if any error isn't related to a member.
+     */
+    static Set<Runnable> failed(String message, List<Runnable> removals) {
+        Set<Runnable> result = new LinkedHashSet<>();
+        Matcher m = ERROR.matcher(message == null ? "" : message);
+
+        while (m.find()) {
+            int line = Integer.parseInt(m.group(1));
+            Runnable removal = line >= 1 && line <= removals.size() ? removals.get(line - 1) : null;
+
+            if (removal == null)
+                return Collections.emptySet();
+
+            result.add(removal);
+        }
+
+        return result;
+    }
+
+    /**
+     * The expression that a field is accessed on.
+     */
+    private static String owner(Field field) {
+        String declaringClass = field.getDeclaringClass().getCanonicalName();
+
+        return Modifier.isStatic(field.getModifiers())
+            ? declaringClass
+            : "((" + declaringClass + ") target)";
+    }
+
+    /**
+     * The argument list of a call, casting and unboxing array elements.
+     */
+    private static String arguments(Class<?>[] types) {
+        List<String> result = new ArrayList<>(types.length);
+
+        for (int i = 0; i < types.length; i++)
+            result.add(argument(types[i], "args[" + i + "]"));
+
+        return String.join(", ", result);
+    }
+
+    /**
+     * Cast and unbox an argument to a type.
+     */
+    private static String argument(Class<?> type, String argument) {
+        if (type.isPrimitive())
+            return "((" + Reflect.wrapper(type).getName() + ") " + argument + ")." + type.getName() + "Value()";
+        else
+            return "(" + type.getCanonicalName() + ") " + argument;
+    }
+
+    static boolean isAccessible(Class<?>[] types) {
+        for (Class<?> type : types)
+            if (!isAccessible(type))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Whether a type can be referenced by name from the generated class.
+     */
+    static boolean isAccessible(Class<?> type) {
+        while (type.isArray())
+            type = type.getComponentType();
+
+        if (type.isPrimitive())
+            return true;
+        else if (type.getCanonicalName() == null || type.isSynthetic())
+            return false;
+
+
+
+
+
+
+        for (Class<?> t = type; t != null; t = t.getDeclaringClass())
+            if (!Modifier.isPublic(t.getModifiers()))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * A class loader for a single generated accessor class, which sees the
+     * types visible to the accessed type's class loader.
+     */
+    static final class AccessorClassLoader extends ClassLoader {
+
+        AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
+
@@ -0,0 +1,2060 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+// ...
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+// ...
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * A cache of resolved members, held per {@link Class}.
+ * <p>
+ * The cache is attached to the class it describes, such that it can be
+ * garbage collected along with the class and its class loader. Members that
+ * reference types of unrelated class loaders, e.g. methods resolved for
+ * arguments of such types, are not cached, see {@link #isVisible(Class...)}.
+ * Besides resolution results, it holds lazily initialised tables of the
+ * class's members indexed by name, which allow for resolving members without
+ * resorting to exceptions such as {@link NoSuchMethodException} or
+ * {@link NoSuchFieldException} for control flow.
+ *
+ * @author Lukas Eder
+ */
+final class ReflectCache {
+
+
+    private static final ClassValue<ReflectCache>                  CACHE        = new ClassValue<ReflectCache>() {
+        @Override
+        protected ReflectCache computeValue(Class<?> type) {
+            return new ReflectCache(type);
+        }
+    };
+
+
+    // ClassValue is not available prior to Java 7. The keys are weakly
+    // referenced, but each value strongly references its key through
+    // ReflectCache.type. A class, and thus its class loader, can therefore
+    // only be unloaded after the garbage collector has cleared the soft
+    // reference to its cache, which happens only under memory pressure.
+    private static final Map<Class<?>, SoftReference<ReflectCache>> LEGACY_CACHE = new WeakHashMap<Class<?>, SoftReference<ReflectCache>>();
+
+    private static final Method[]                                   NO_METHODS   = {};
+    private static final Object[]                                   NO_ARGS      = {};
+    private static final MethodEntry[]                              NO_PROBES    = {};
+
+    // The maximum number of argument type combinations per method name (or
+    // for constructors) that can be probed without allocating a Signature
+    private static final int                                        MAX_PROBES   = 8;
+
+    // The maximum number of field names per type that are remembered not to
+    // resolve. Callers may probe arbitrary, e.g. user supplied, names.
+    private static final int                                        MAX_MISSING_FIELDS = 64;
+
+    // The maximum number of methods and constructors per type that are cached
+    // by argument types. Callers may pass arguments of arbitrarily many
+    // runtime types, e.g. to a method accepting Object.
+    private static final int                                        MAX_SIGNATURES = 256;
+
+    // The maximum number of proxy classes cached per type
+    private static final int                                        MAX_PROXIES  = 64;
+
+
+    private static final Lookup                                     LOOKUP       = MethodHandles.lookup();
+
+    // The index of a member in a compiled accessor has not been looked up yet
+    private static final int                                        UNKNOWN      = -2;
+
+    // A typed method handle cannot be produced, e.g. for a narrowing conversion
+    private static final MethodHandle                               NO_HANDLE    = MethodHandles.identity(Object.class);
+
+
+    /**
+     * The type whose members are cached.
+     */
+    private final Class<?>                                 type;
+
+    /**
+     * Methods resolved by {@link Reflect#call(String, Object...)}.
+     */
+    private final ConcurrentMap<Signature, MethodEntry>    methods;
+
+    /**
+     * Constructors resolved by {@link Reflect#create(Object...)}.
+     */
+    private final ConcurrentMap<Signature, ConstructorEntry> constructors;
+
+    /**
+     * Methods resolved from argument values, by name, which can be probed
+     * without allocating a {@link Signature}.
+     */
+    private final ConcurrentMap<String, MethodEntry[]>     methodProbes;
+
+    /**
+     * Constructors resolved from argument values, which can be probed without
+     * allocating a {@link Signature}.
+     */
+    private volatile ConstructorEntry[]                    constructorProbes;
+
+    /**
+     * Accessible fields resolved by {@link Reflect#field(String)}.
+     */
+    private final ConcurrentMap<String, FieldEntry>        fields;
+
+    /**
+     * Field names that could not be resolved, up to
+     * {@link #MAX_MISSING_FIELDS}.
+     */
+    private final Set<String>                              missingFields;
+
+    /**
+     * Fields resolved by {@link Reflect#setAll(String[], Object[])}, by list
+     * of field names.
+     */
+    private final ConcurrentMap<List<String>, FieldEntry[]> writePlans;
+
+    /**
+     * Proxies created by {@link Reflect#as(Class, Class...)}, by proxied
+     * interface, or by list of proxied interfaces, if there are several.
+     * <p>
+     * If the interfaces aren't visible from the cached type, see
+     * {@link #isVisible(Class...)}, then the proxy is cached by the first
+     * interface instead, by a list of the wrapped type and the key.
+     */
+    private final ConcurrentMap<Object, ProxyClass>        proxies;
+
+    // Member tables, initialised lazily. Racing threads may initialise them
+    // several times, which is harmless, as the results are equivalent.
+    private volatile Map<String, Method[]>                 publicMethods;
+    private volatile Map<String, Method[]>                 declaredMethods;
+    private volatile Map<String, Field>                    publicFields;
+    private volatile Map<String, Field>                    declaredFields;
+    private volatile Constructor<?>[]                      declaredConstructors;
+
+    // Field layouts of Reflect.fields(), initialised lazily, like the member
+    // tables.
+    private volatile FieldLayout                           instanceLayout;
+    private volatile FieldLayout                           staticLayout;
+
+
+    private volatile ReflectAccessor                       accessor;
+
+
+    private ReflectCache(Class<?> type) {
+        this.type = type;
+        this.methods = new ConcurrentHashMap<Signature, MethodEntry>();
+        this.constructors = new ConcurrentHashMap<Signature, ConstructorEntry>();
+        this.methodProbes = new ConcurrentHashMap<String, MethodEntry[]>();
+        this.constructorProbes = new ConstructorEntry[0];
+        this.fields = new ConcurrentHashMap<String, FieldEntry>();
+        this.missingFields = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.writePlans = new ConcurrentHashMap<List<String>, FieldEntry[]>();
+        this.proxies = new ConcurrentHashMap<Object, ProxyClass>();
+    }
+
+    /**
+     * Get the cache for a given type.
+     */
+    static ReflectCache of(Class<?> type) {
+
+        if (true)
+            return CACHE.get(type);
+
+
+        synchronized (LEGACY_CACHE) {
+            SoftReference<ReflectCache> reference = LEGACY_CACHE.get(type);
+            ReflectCache result = reference == null ? null : reference.get();
+
+            if (result == null)
+                LEGACY_CACHE.put(type, new SoftReference<ReflectCache>(result = new ReflectCache(type)));
+
+            return result;
+        }
+    }
+
+
+    /**
+     * Get the compiled accessor of the cached type, generating it on first
+     * access.
+     */
+    ReflectAccessor accessor() {
+        ReflectAccessor result = accessor;
+
+        if (result == null) {
+            synchronized (this) {
+                result = accessor;
+
+                if (result == null)
+                    accessor = result = ReflectAccessor.of(type);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get the public methods of the cached type and its super types by name,
+     * as returned by {@link Class#getMethods()}.
+     */
+    Method[] publicMethods(String name) {
+        Map<String, Method[]> result = publicMethods;
+
+        if (result == null)
+            publicMethods = result = index(type.getMethods());
+
+        Method[] methods = result.get(name);
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    /**
+     * Get the methods declared by the cached type by name, as returned by
+     * {@link Class#getDeclaredMethods()}.
+     */
+    Method[] declaredMethods(String name) {
+        Map<String, Method[]> result = declaredMethods;
+
+        if (result == null)
+            declaredMethods = result = index(type.getDeclaredMethods());
+
+        Method[] methods = result.get(name);
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    /**
+     * Get a public field of the cached type or its super types by name, or
+     * <code>null</code> if there is no such field.
+     * <p>
+     * If several fields of the same name are visible, the one that
+     * {@link Class#getField(String)} would return is returned.
+     */
+    Field publicField(String name) {
+        Map<String, Field> result = publicFields;
+
+        if (result == null)
+            publicFields = result = index(type.getFields());
+
+        return result.get(name);
+    }
+
+    /**
+     * Get a field declared by the cached type by name, or <code>null</code> if
+     * there is no such field.
+     */
+    Field declaredField(String name) {
+        Map<String, Field> result = declaredFields;
+
+        if (result == null)
+            declaredFields = result = index(type.getDeclaredFields());
+
+        return result.get(name);
+    }
+
+    /**
+     * Get the constructors declared by the cached type, as returned by
+     * {@link Class#getDeclaredConstructors()}.
+     */
+    Constructor<?>[] declaredConstructors() {
+        Constructor<?>[] result = declaredConstructors;
+
+        if (result == null)
+            declaredConstructors = result = type.getDeclaredConstructors();
+
+        return result;
+    }
+
+    private static Map<String, Method[]> index(Method[] methods) {
+        Map<String, List<Method>> lists = new HashMap<String, List<Method>>();
+
+        for (Method method : methods) {
+            List<Method> list = lists.get(method.getName());
+
+            if (list == null)
+                lists.put(method.getName(), list = new ArrayList<Method>());
+
+            list.add(method);
+        }
+
+        Map<String, Method[]> result = new HashMap<String, Method[]>();
+        for (Map.Entry<String, List<Method>> entry : lists.entrySet())
+            result.put(entry.getKey(), entry.getValue().toArray(NO_METHODS));
+
+        return result;
+    }
+
+    private static Map<String, Field> index(Field[] fields) {
+        Map<String, Field> result = new HashMap<String, Field>();
+
+        // Fields are listed in lookup order, so shadowed fields come last
+        for (Field field : fields)
+            if (!result.containsKey(field.getName()))
+                result.put(field.getName(), field);
+
+        return result;
+    }
+
+    /**
+     * Whether types can be referenced from this cache without keeping their
+     * class loaders reachable for longer than the cached type's class loader.
+     * <p>
+     * This is the case if they are loaded by the cached type's class loader
+     * or one of its ancestors, or by jOOR's class loader, which the cache
+     * references anyway. Other types, e.g. the argument types of a call to
+     * <code>List.add()</code> with an object from a plugin's class loader,
+     * must not be cached, as that would prevent the plugin from being
+     * unloaded.
+     */
+    boolean isVisible(Class<?>... types) {
+        for (Class<?> t : types) {
+            while (t.isArray())
+                t = t.getComponentType();
+
+            ClassLoader loader = t.getClassLoader();
+
+            if (loader == null || loader == ReflectCache.class.getClassLoader())
+                continue;
+
+            ClassLoader l = type.getClassLoader();
+            while (l != null && l != loader)
+                l = l.getParent();
+
+            if (l == null)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get a previously resolved method, or <code>null</code> if no such
+     * method has been resolved yet.
+     */
+    MethodEntry method(String name, Class<?>[] types) {
+        return methods.get(new Signature(name, types));
+    }
+
+    /**
+     * Cache a resolved, accessible method, unless too many methods have been
+     * cached already, or the argument types aren't visible, see
+     * {@link #isVisible(Class...)}.
+     */
+    MethodEntry method(String name, Class<?>[] types, Method method) {
+        MethodEntry result = new MethodEntry(this, types, method);
+
+        if (methods.size() >= MAX_SIGNATURES || !isVisible(types))
+            return result;
+
+        MethodEntry previous = methods.putIfAbsent(new Signature(name, types), result);
+
+        if (previous != null)
+            return previous;
+
+        // Racing threads may drop each other's probes, which is harmless
+        MethodEntry[] probes = methodProbes.get(name);
+        if (probes == null)
+            probes = NO_PROBES;
+
+        if (probes.length < MAX_PROBES) {
+            MethodEntry[] copy = Arrays.copyOf(probes, probes.length + 1);
+            copy[probes.length] = result;
+            methodProbes.put(name, copy);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a previously resolved method for the runtime types of a set of
+     * arguments, or <code>null</code> if no such method has been resolved yet,
+     * without allocating any objects.
+     */
+    MethodEntry methodFor(String name, Object[] args) {
+        MethodEntry[] probes = methodProbes.get(name);
+
+        if (probes != null)
+            for (MethodEntry entry : probes)
+                if (matches(entry.types, args))
+                    return entry;
+
+        return null;
+    }
+
+    /**
+     * Get the previously resolved fields for a list of field names, or
+     * <code>null</code> if they haven't been resolved yet.
+     */
+    FieldEntry[] writePlan(List<String> names) {
+        return writePlans.get(names);
+    }
+
+    /**
+     * Cache the resolved fields for a list of field names.
+     */
+    FieldEntry[] writePlan(List<String> names, FieldEntry[] plan) {
+        FieldEntry[] previous = writePlans.putIfAbsent(names, plan);
+        return previous != null ? previous : plan;
+    }
+
+    /**
+     * Get the previously resolved instance or static field layout, or
+     * <code>null</code> if it hasn't been resolved yet.
+     */
+    FieldLayout layout(boolean isStatic) {
+        return isStatic ? staticLayout : instanceLayout;
+    }
+
+    /**
+     * Cache a resolved instance or static field layout.
+     */
+    FieldLayout layout(boolean isStatic, FieldLayout layout) {
+        if (isStatic)
+            staticLayout = layout;
+        else
+            instanceLayout = layout;
+
+        return layout;
+    }
+
+    /**
+     * Get a previously created proxy class by its key, or <code>null</code>
+     * if no such proxy class has been created yet, or if it is cached by its
+     * interface.
+     */
+    ProxyClass proxy(Object key) {
+        return proxies.get(key);
+    }
+
+    /**
+     * Get a previously created proxy class for a set of interfaces, or
+     * <code>null</code> if no such proxy class has been created yet.
+     */
+    ProxyClass proxy(Object key, Class<?>[] interfaces) {
+        ProxyClass result = proxies.get(key);
+
+        if (result == null && !isVisible(interfaces)) {
+            ReflectCache owner = proxyOwner(interfaces);
+
+            if (owner != null)
+                result = owner.proxies.get(Arrays.asList(type, key));
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache a proxy class for a set of interfaces, unless too many proxy
+     * classes have been cached already, or unless there is no cache from
+     * which all the involved types are visible.
+     */
+    ProxyClass proxy(Object key, Class<?>[] interfaces, Map<Method, ProxyEntry> dispatch) {
+        ProxyClass result = new ProxyClass(this, interfaces, dispatch);
+        ReflectCache owner = isVisible(interfaces) ? this : proxyOwner(interfaces);
+
+        if (owner == null || owner.proxies.size() >= MAX_PROXIES)
+            return result;
+
+        ProxyClass previous = owner.proxies.putIfAbsent(owner == this ? key : Arrays.asList(type, key), result);
+        return previous != null ? previous : result;
+    }
+
+    /**
+     * The cache of the first interface, if the cached type and all the
+     * interfaces are visible from it, or <code>null</code> otherwise.
+     */
+    private ReflectCache proxyOwner(Class<?>[] interfaces) {
+        ReflectCache result = of(interfaces[0]);
+        return result.isVisible(type) && result.isVisible(interfaces) ? result : null;
+    }
+
+    /**
+     * Get a previously resolved constructor, or <code>null</code> if no such
+     * constructor has been resolved yet.
+     */
+    ConstructorEntry constructor(Class<?>[] types) {
+        return constructors.get(new Signature("<init>", types));
+    }
+
+    /**
+     * Cache a resolved, accessible constructor, unless too many constructors
+     * have been cached already, or the argument types aren't visible, see
+     * {@link #isVisible(Class...)}.
+     */
+    ConstructorEntry constructor(Class<?>[] types, Constructor<?> constructor) {
+        ConstructorEntry result = new ConstructorEntry(this, types, constructor);
+
+        if (constructors.size() >= MAX_SIGNATURES || !isVisible(types))
+            return result;
+
+        ConstructorEntry previous = constructors.putIfAbsent(new Signature("<init>", types), result);
+
+        if (previous != null)
+            return previous;
+
+        // Racing threads may drop each other's probes, which is harmless
+        ConstructorEntry[] probes = constructorProbes;
+
+        if (probes.length < MAX_PROBES) {
+            ConstructorEntry[] copy = Arrays.copyOf(probes, probes.length + 1);
+            copy[probes.length] = result;
+            constructorProbes = copy;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a previously resolved constructor for the runtime types of a set of
+     * arguments, or <code>null</code> if no such constructor has been
+     * resolved yet, without allocating any objects.
+     */
+    ConstructorEntry constructorFor(Object[] args) {
+        for (ConstructorEntry entry : constructorProbes)
+            if (matches(entry.types, args))
+                return entry;
+
+        return null;
+    }
+
+    /**
+     * Whether argument values have exactly the given runtime types, where
+     * <code>null</code> values are typed {@link Reflect.NULL}.
+     */
+    private static boolean matches(Class<?>[] types, Object[] args) {
+        int length = args == null ? 0 : args.length;
+
+        if (types.length != length)
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+
+            if ((arg == null ? Reflect.NULL.class : arg.getClass()) != types[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get a previously resolved field, or <code>null</code> if no such field
+     * has been resolved yet.
+     */
+    FieldEntry field(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Cache a resolved, accessible field.
+     */
+    FieldEntry field(String name, Field field) {
+        FieldEntry result = new FieldEntry(this, field);
+        FieldEntry previous = fields.putIfAbsent(name, result);
+        return previous != null ? previous : result;
+    }
+
+    /**
+     * Whether a field name is known not to resolve.
+     */
+    boolean isMissingField(String name) {
+        return missingFields.contains(name);
+    }
+
+    /**
+     * Remember that a field name does not resolve, unless too many names have
+     * been remembered already.
+     */
+    void missingField(String name) {
+        if (missingFields.size() < MAX_MISSING_FIELDS)
+            missingFields.add(name);
+    }
+
+    /**
+     * A resolved, accessible method.
+     */
+    static final class MethodEntry {
+        final Class<?>[]             types;
+        final Method                 method;
+        final boolean                isVoid;
+
+
+        private final ReflectCache    cache;
+        private final Class<?>[]      parameterTypes;
+        private final boolean         isStatic;
+        private volatile MethodHandle handle;
+        private volatile int          compiled = UNKNOWN;
+        private volatile Object[]     functions;
+
+        // Handles returning primitive types, which avoid boxing
+        private volatile Object[]     typedHandles;
+
+
+        MethodEntry(ReflectCache cache, Class<?>[] types, Method method) {
+
+            this.cache = cache;
+            this.parameterTypes = method.getParameterTypes();
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+
+            this.types = types;
+            this.method = method;
+            this.isVoid = method.getReturnType() == void.class;
+        }
+
+        Object invoke(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+                Object[] a = arguments(parameterTypes, args);
+
+                if (mode == InvocationMode.COMPILED) {
+                    int i = compiled;
+
+                    if (i == UNKNOWN)
+                        compiled = i = cache.accessor().method(method);
+
+                    // The accessor casts the target to the cached type, which
+                    // may be a subtype of the method's declaring type
+                    if (i >= 0 && (isStatic || cache.type.isInstance(target))) {
+                        try {
+                            return cache.accessor().invoke(i, target, a);
+                        }
+                        catch (Throwable e) {
+                            throw new InvocationTargetException(e);
+                        }
+                    }
+                }
+
+                MethodHandle h = handle;
+
+                if (h == null)
+                    handle = h = spreader(unreflect(method), isStatic, parameterTypes.length);
+
+                return invokeSpread(h, target, a);
+            }
+
+
+            return method.invoke(target, args);
+        }
+
+        int invokeInt(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+            MethodHandle h = typedHandle(mode, int.class);
+
+            if (h != null) {
+                checkTarget(target);
+                Object[] a = arguments(parameterTypes, args);
+
+                try {
+                    return (int) h.invokeExact(target, a);
+                }
+                catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            }
+
+
+            return (Integer) widen(invoke(mode, target, args), int.class);
+        }
+
+        long invokeLong(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+            MethodHandle h = typedHandle(mode, long.class);
+
+            if (h != null) {
+                checkTarget(target);
+                Object[] a = arguments(parameterTypes, args);
+
+                try {
+                    return (long) h.invokeExact(target, a);
+                }
+                catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            }
+
+
+            return (Long) widen(invoke(mode, target, args), long.class);
+        }
+
+        double invokeDouble(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+            MethodHandle h = typedHandle(mode, double.class);
+
+            if (h != null) {
+                checkTarget(target);
+                Object[] a = arguments(parameterTypes, args);
+
+                try {
+                    return (double) h.invokeExact(target, a);
+                }
+                catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            }
+
+
+            return (Double) widen(invoke(mode, target, args), double.class);
+        }
+
+        boolean invokeBoolean(InvocationMode mode, Object target, Object[] args) throws Exception {
+
+            MethodHandle h = typedHandle(mode, boolean.class);
+
+            if (h != null) {
+                checkTarget(target);
+                Object[] a = arguments(parameterTypes, args);
+
+                try {
+                    return (boolean) h.invokeExact(target, a);
+                }
+                catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            }
+
+
+            return (Boolean) widen(invoke(mode, target, args), boolean.class);
+        }
+
+
+        /**
+         * Check the receiver like {@link Method#invoke(Object, Object...)}
+         * does.
+         */
+        private void checkTarget(Object target) {
+            if (!isStatic && !method.getDeclaringClass().isInstance(target)) {
+                if (target == null)
+                    throw new NullPointerException("Cannot invoke instance method " + method + " on null");
+                else
+                    throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+        }
+
+        /**
+         * A handle returning a primitive type, or <code>null</code> if the
+         * method is to be invoked like by
+         * {@link #invoke(InvocationMode, Object, Object[])} instead, e.g.
+         * because its return type cannot be converted to the primitive type
+         * without boxing.
+         */
+        private MethodHandle typedHandle(InvocationMode mode, Class<?> type) throws IllegalAccessException {
+            Class<?> returnType = method.getReturnType();
+
+            if (mode == InvocationMode.REFLECTION || !returnType.isPrimitive() || returnType == void.class)
+                return null;
+
+            MethodHandle result = (MethodHandle) find(typedHandles, type);
+
+            if (result == null) {
+                try {
+                    result = spreader(unreflect(method), isStatic, parameterTypes.length, type);
+                }
+
+                // Narrowing conversions fail like in REFLECTION mode, when the
+                // result is cast
+                catch (WrongMethodTypeException e) {
+                    result = NO_HANDLE;
+                }
+
+                // Racing threads may drop each other's handles, which is harmless
+                typedHandles = add(typedHandles, type, result);
+            }
+
+            return result == NO_HANDLE ? null : result;
+        }
+
+        <F> F function(Class<F> functionType) {
+            if (!cache.isVisible(functionType))
+                return ReflectLambda.method(functionType, method);
+
+            Object result = find(functions, functionType);
+
+            // Racing threads may drop each other's functions, which is harmless
+            if (result == null)
+                functions = add(functions, functionType, result = ReflectLambda.method(functionType, method));
+
+            return functionType.cast(result);
+        }
+
+    }
+
+    /**
+     * A resolved, accessible constructor.
+     */
+    static final class ConstructorEntry {
+        final Class<?>[]             types;
+        final Constructor<?>         constructor;
+
+
+        private final ReflectCache    cache;
+        private final Class<?>[]      parameterTypes;
+        private volatile MethodHandle handle;
+        private volatile int          compiled = UNKNOWN;
+        private volatile Object[]     functions;
+
+
+        ConstructorEntry(ReflectCache cache, Class<?>[] types, Constructor<?> constructor) {
+
+            this.cache = cache;
+            this.parameterTypes = constructor.getParameterTypes();
+
+            this.types = types;
+            this.constructor = constructor;
+        }
+
+        Object newInstance(InvocationMode mode, Object[] args) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                Object[] a = arguments(parameterTypes, args);
+
+                if (mode == InvocationMode.COMPILED) {
+                    int i = compiled;
+
+                    if (i == UNKNOWN)
+                        compiled = i = cache.accessor().constructor(constructor);
+
+                    if (i >= 0) {
+                        try {
+                            return cache.accessor().newInstance(i, a);
+                        }
+                        catch (Throwable e) {
+                            throw new InvocationTargetException(e);
+                        }
+                    }
+                }
+
+                MethodHandle h = handle;
+
+                if (h == null)
+                    handle = h = spreader(unreflect(constructor), true, parameterTypes.length);
+
+                return invokeSpread(h, null, a);
+            }
+
+
+            return constructor.newInstance(args);
+        }
+
+
+        <F> F function(Class<F> functionType) {
+            if (!cache.isVisible(functionType))
+                return ReflectLambda.constructor(functionType, constructor);
+
+            Object result = find(functions, functionType);
+
+            // Racing threads may drop each other's functions, which is harmless
+            if (result == null)
+                functions = add(functions, functionType, result = ReflectLambda.constructor(functionType, constructor));
+
+            return functionType.cast(result);
+        }
+
+    }
+
+    /**
+     * A resolved, accessible field.
+     */
+    static final class FieldEntry {
+        final Field                  field;
+
+        // Whether the final modifier has been removed, if applicable
+        private volatile boolean     nonFinal;
+
+
+        private final ReflectCache    cache;
+        private volatile MethodHandle getter;
+        private volatile MethodHandle setter;
+        private volatile int          compiledGetter = UNKNOWN;
+        private volatile int          compiledSetter = UNKNOWN;
+
+        // Setters cannot be produced for some final fields
+        private volatile boolean      noSetter;
+
+        private volatile Object[]     getters;
+        private volatile Object[]     setters;
+
+        // Getters and setters of primitive types, which avoid boxing
+        private volatile Object[]     typedGetters;
+        private volatile Object[]     typedSetters;
+
+
+
+
+
+
+        FieldEntry(ReflectCache cache, Field field) {
+
+            this.cache = cache;
+
+            this.field = field;
+        }
+
+        /**
+         * Remove the <code>final</code> modifier from the field, if
+         * applicable, once per entry.
+         */
+        void removeFinal() throws Exception {
+            if (!nonFinal) {
+                Reflect.removeFinal(field);
+                nonFinal = true;
+            }
+        }
+
+        Object get(InvocationMode mode, Object target) throws Exception {
+
+            if (mode == InvocationMode.COMPILED) {
+                int i = compiledGetter;
+
+                if (i == UNKNOWN)
+                    compiledGetter = i = cache.accessor().getter(field);
+
+                if (i >= 0 && isInstance(target)) {
+                    try {
+                        return cache.accessor().get(i, target);
+                    }
+                    catch (Throwable e) {
+                        throw rethrow(e);
+                    }
+                }
+
+                mode = InvocationMode.METHOD_HANDLES;
+            }
+
+            if (mode == InvocationMode.METHOD_HANDLES) {
+                checkTarget(target);
+                MethodHandle h = getter;
+
+                if (h == null)
+                    getter = h = getter(field);
+
+                try {
+                    return (Object) h.invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.get(target);
+        }
+
+        void set(InvocationMode mode, Object target, Object value) throws Exception {
+
+            if (mode == InvocationMode.COMPILED) {
+                int i = compiledSetter;
+
+                if (i == UNKNOWN)
+                    compiledSetter = i = cache.accessor().setter(field);
+
+                if (i >= 0 && isInstance(target)) {
+                    Object v = argument(field.getType(), value);
+
+                    try {
+                        cache.accessor().set(i, target, v);
+                        return;
+                    }
+                    catch (Throwable e) {
+                        throw rethrow(e);
+                    }
+                }
+
+                mode = InvocationMode.METHOD_HANDLES;
+            }
+
+            if (mode == InvocationMode.METHOD_HANDLES && !noSetter) {
+                MethodHandle h = setter;
+
+                if (h == null) {
+                    try {
+                        setter = h = setter(field);
+                    }
+                    catch (IllegalAccessException e) {
+                        noSetter = true;
+                    }
+                }
+
+                if (h != null) {
+                    checkTarget(target);
+                    Object v = argument(field.getType(), value);
+
+                    try {
+                        h.invokeExact(target, v);
+                        return;
+                    }
+                    catch (Throwable e) {
+                        throw rethrow(e);
+                    }
+                }
+            }
+
+
+            field.set(target, value);
+        }
+
+
+        /**
+         * Whether a compiled accessor, which casts the target to the field's
+         * declaring type, can access the field on a target.
+         */
+        private boolean isInstance(Object target) {
+            return Modifier.isStatic(field.getModifiers()) || field.getDeclaringClass().isInstance(target);
+        }
+
+        /**
+         * Check the target like {@link Field#get(Object)} does.
+         */
+        private void checkTarget(Object target) {
+            if (!isInstance(target)) {
+                if (target == null)
+                    throw new NullPointerException("Cannot access instance field " + field + " on null");
+                else
+                    throw new IllegalArgumentException("Cannot access field " + field + " on an instance of " + target.getClass().getName());
+            }
+        }
+
+
+        boolean getBoolean(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (boolean) typedGetter(boolean.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getBoolean(target);
+        }
+
+        void setBoolean(InvocationMode mode, Object target, boolean value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(boolean.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setBoolean(target, value);
+        }
+
+        byte getByte(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (byte) typedGetter(byte.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getByte(target);
+        }
+
+        void setByte(InvocationMode mode, Object target, byte value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(byte.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setByte(target, value);
+        }
+
+        char getChar(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (char) typedGetter(char.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getChar(target);
+        }
+
+        void setChar(InvocationMode mode, Object target, char value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(char.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setChar(target, value);
+        }
+
+        short getShort(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (short) typedGetter(short.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getShort(target);
+        }
+
+        void setShort(InvocationMode mode, Object target, short value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(short.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setShort(target, value);
+        }
+
+        int getInt(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (int) typedGetter(int.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getInt(target);
+        }
+
+        void setInt(InvocationMode mode, Object target, int value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(int.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setInt(target, value);
+        }
+
+        long getLong(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (long) typedGetter(long.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getLong(target);
+        }
+
+        void setLong(InvocationMode mode, Object target, long value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(long.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setLong(target, value);
+        }
+
+        float getFloat(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (float) typedGetter(float.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getFloat(target);
+        }
+
+        void setFloat(InvocationMode mode, Object target, float value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(float.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setFloat(target, value);
+        }
+
+        double getDouble(InvocationMode mode, Object target) throws Exception {
+
+            if (mode != InvocationMode.REFLECTION) {
+                checkTarget(target);
+
+                try {
+                    return (double) typedGetter(double.class).invokeExact(target);
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            return field.getDouble(target);
+        }
+
+        void setDouble(InvocationMode mode, Object target, double value) throws Exception {
+
+            MethodHandle h = mode != InvocationMode.REFLECTION ? typedSetter(double.class) : null;
+
+            if (h != null) {
+                checkTarget(target);
+
+                try {
+                    h.invokeExact(target, value);
+                    return;
+                }
+                catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+
+
+            field.setDouble(target, value);
+        }
+
+
+        /**
+         * Get a typed getter, which converts the field value like e.g.
+         * {@link Field#getInt(Object)} does.
+         */
+        private MethodHandle typedGetter(Class<?> type) throws IllegalAccessException {
+            MethodHandle result = (MethodHandle) find(typedGetters, type);
+
+            if (result == null) {
+                if (!widens(field.getType(), type))
+                    throw new IllegalArgumentException("Cannot get field " + field + " as " + type);
+
+                // Racing threads may drop each other's getters, which is harmless
+                typedGetters = add(typedGetters, type, result = getter(field, type));
+            }
+
+            return result;
+        }
+
+        /**
+         * Get a typed setter, which converts the field value like e.g.
+         * {@link Field#setInt(Object, int)} does, or <code>null</code> if no
+         * setter can be produced.
+         */
+        private MethodHandle typedSetter(Class<?> type) {
+            if (noSetter)
+                return null;
+
+            MethodHandle result = (MethodHandle) find(typedSetters, type);
+
+            if (result == null) {
+                if (!widens(type, field.getType()))
+                    throw new IllegalArgumentException("Cannot set field " + field + " to a " + type + " value");
+
+                try {
+                    result = setter(field, type);
+                }
+                catch (IllegalAccessException e) {
+                    noSetter = true;
+                    return null;
+                }
+
+                // Racing threads may drop each other's setters, which is harmless
+                typedSetters = add(typedSetters, type, result);
+            }
+
+            return result;
+        }
+
+
+
+        <F> F getterFunction(Class<F> functionType) {
+            if (!cache.isVisible(functionType))
+                return ReflectLambda.getter(functionType, field);
+
+            Object result = find(getters, functionType);
+
+            // Racing threads may drop each other's functions, which is harmless
+            if (result == null)
+                getters = add(getters, functionType, result = ReflectLambda.getter(functionType, field));
+
+            return functionType.cast(result);
+        }
+
+        <F> F setterFunction(Class<F> functionType) {
+            if (!cache.isVisible(functionType))
+                return ReflectLambda.setter(functionType, field);
+
+            Object result = find(setters, functionType);
+
+            // Racing threads may drop each other's functions, which is harmless
+            if (result == null)
+                setters = add(setters, functionType, result = ReflectLambda.setter(functionType, field));
+
+            return functionType.cast(result);
+        }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    }
+
+    /**
+     * Apply a primitive widening conversion to a boxed value, like
+     * <code>MethodHandle.asType()</code> does.
+     */
+    private static Object widen(Object value, Class<?> type) {
+        if (value instanceof Character && type != char.class)
+            value = Integer.valueOf((Character) value);
+
+        if (type == int.class && (value instanceof Short || value instanceof Byte))
+            return ((Number) value).intValue();
+        else if (type == long.class && (value instanceof Integer || value instanceof Short || value instanceof Byte))
+            return ((Number) value).longValue();
+        else if (type == double.class && (value instanceof Float || value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte))
+            return ((Number) value).doubleValue();
+        else
+            return value;
+    }
+
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        try {
+            return LOOKUP.unreflect(method);
+        }
+        catch (IllegalAccessException ignore) {
+            return LOOKUP.unreflect(forceAccessible(method));
+        }
+    }
+
+    private static MethodHandle unreflect(Constructor<?> constructor) throws IllegalAccessException {
+        try {
+            return LOOKUP.unreflectConstructor(constructor);
+        }
+        catch (IllegalAccessException ignore) {
+            return LOOKUP.unreflectConstructor(forceAccessible(constructor));
+        }
+    }
+
+    /**
+     * Get a field getter of type <code>(Object)Object</code>, where the
+     * argument is the receiver, if any.
+     */
+    private static MethodHandle getter(Field field) throws IllegalAccessException {
+        return getter(field, Object.class);
+    }
+
+    /**
+     * Get a field getter of type <code>(Object)T</code>, where the argument
+     * is the receiver, if any.
+     */
+    private static MethodHandle getter(Field field, Class<?> type) throws IllegalAccessException {
+        MethodHandle handle;
+
+        try {
+            handle = LOOKUP.unreflectGetter(field);
+        }
+        catch (IllegalAccessException ignore) {
+            handle = LOOKUP.unreflectGetter(forceAccessible(field));
+        }
+
+        if (Modifier.isStatic(field.getModifiers()))
+            return MethodHandles.dropArguments(handle.asType(MethodType.methodType(type)), 0, Object.class);
+        else
+            return handle.asType(MethodType.methodType(type, Object.class));
+    }
+
+    /**
+     * Get a field setter of type <code>(Object, Object)void</code>, where the
+     * first argument is the receiver, if any.
+     */
+    private static MethodHandle setter(Field field) throws IllegalAccessException {
+        return setter(field, Object.class);
+    }
+
+    /**
+     * Get a field setter of type <code>(Object, T)void</code>, where the
+     * first argument is the receiver, if any.
+     */
+    private static MethodHandle setter(Field field, Class<?> type) throws IllegalAccessException {
+        MethodHandle handle;
+
+        try {
+            handle = LOOKUP.unreflectSetter(field);
+        }
+        catch (IllegalAccessException ignore) {
+            handle = LOOKUP.unreflectSetter(forceAccessible(field));
+        }
+
+        if (Modifier.isStatic(field.getModifiers()))
+            return MethodHandles.dropArguments(handle.asType(MethodType.methodType(void.class, type)), 0, Object.class);
+        else
+            return handle.asType(MethodType.methodType(void.class, Object.class, type));
+    }
+
+    /**
+     * Public members need not have been made accessible by
+     * {@link Reflect#accessible(AccessibleObject)}, but they might still not
+     * be accessible to a {@link Lookup}, e.g. if their module isn't read by
+     * jOOR's module.
+     * <p>
+     * If the member was accessible already, the lookup fails again with an
+     * equivalent exception.
+     */
+    private static <T extends AccessibleObject> T forceAccessible(T accessible) {
+        accessible.setAccessible(true);
+        return accessible;
+    }
+
+    /**
+     * Adapt a method or constructor handle to the type
+     * <code>(Object, Object[])Object</code>, where the first argument is the
+     * receiver, if any, and the second argument holds the spread arguments.
+     */
+    private static MethodHandle spreader(MethodHandle handle, boolean isStatic, int parameterCount) {
+        return spreader(handle, isStatic, parameterCount, Object.class);
+    }
+
+    /**
+     * Adapt a method handle to the type <code>(Object, Object[])R</code>,
+     * where the first argument is the receiver, if any, and the second
+     * argument holds the spread arguments.
+     */
+    private static MethodHandle spreader(MethodHandle handle, boolean isStatic, int parameterCount, Class<?> returnType) {
+        handle = handle.asFixedArity();
+        handle = handle.asType(MethodType.genericMethodType(handle.type().parameterCount()).changeReturnType(returnType));
+
+        if (isStatic)
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+
+        return handle.asSpreader(Object[].class, parameterCount);
+    }
+
+    /**
+     * Invoke a handle produced by {@link #spreader(MethodHandle, boolean, int)},
+     * wrapping exceptions like {@link Method#invoke(Object, Object...)} does.
+     * <p>
+     * The arguments must have been checked by
+     * {@link #arguments(Class[], Object[])}, such that all exceptions are
+     * thrown by the invoked member.
+     */
+    private static Object invokeSpread(MethodHandle handle, Object target, Object[] args) throws InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(target, args);
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Check and convert arguments like {@link Method#invoke(Object, Object...)}
+     * does, before they are passed to a method handle or a compiled accessor,
+     * such that mismatches are reported as {@link IllegalArgumentException},
+     * rather than as exceptions thrown by the invoked member.
+     */
+    static Object[] arguments(Class<?>[] types, Object[] args) {
+        Object[] result = args == null ? NO_ARGS : args;
+
+        if (result.length != types.length)
+            throw new IllegalArgumentException("wrong number of arguments: " + result.length + " expected: " + types.length);
+
+        for (int i = 0; i < types.length; i++) {
+            Object argument = argument(types[i], result[i]);
+
+            if (argument != result[i]) {
+                if (result == args)
+                    result = args.clone();
+
+                result[i] = argument;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Check and convert an argument, applying a primitive widening
+     * conversion to boxed values, if applicable.
+     */
+    static Object argument(Class<?> type, Object argument) {
+        if (!type.isPrimitive()) {
+            if (argument != null && !type.isInstance(argument))
+                throw new IllegalArgumentException("argument type mismatch");
+
+            return argument;
+        }
+
+        Object result = argument == null ? null : convert(argument, type);
+
+        if (result == null)
+            throw new IllegalArgumentException("argument type mismatch");
+
+        return result;
+    }
+
+    /**
+     * Apply a primitive widening conversion to a boxed value, or return
+     * <code>null</code> if no such conversion exists.
+     */
+    private static Object convert(Object value, Class<?> type) {
+        Class<?> wrapper = Reflect.wrapper(type);
+
+        if (wrapper.isInstance(value))
+            return value;
+
+        // A char widens to int, long, float and double, like a short does,
+        // but it doesn't widen to short
+        boolean isChar = value instanceof Character;
+        int from = isChar ? 2 : rank(value.getClass());
+        int to = rank(wrapper);
+
+        if (from < 0 || to < 0 || from >= to)
+            return null;
+
+        Number n = isChar ? (Number) Integer.valueOf((Character) value) : (Number) value;
+        switch (to) {
+            case 2:  return n.shortValue();
+            case 3:  return n.intValue();
+            case 4:  return n.longValue();
+            case 5:  return n.floatValue();
+            default: return n.doubleValue();
+        }
+    }
+
+    /**
+     * Whether a primitive type can be converted to another primitive type by
+     * an identity or a primitive widening conversion.
+     */
+    private static boolean widens(Class<?> from, Class<?> to) {
+        if (!from.isPrimitive() || !to.isPrimitive())
+            return false;
+        else if (from == to)
+            return true;
+
+        int f = from == char.class ? 2 : rank(Reflect.wrapper(from));
+        int t = rank(Reflect.wrapper(to));
+        return f > 0 && t > f;
+    }
+
+    /**
+     * The position of a numeric wrapper type in the order of primitive
+     * widening conversions, or <code>-1</code> for other types.
+     */
+    private static int rank(Class<?> wrapper) {
+        if (wrapper == Byte.class)
+            return 1;
+        else if (wrapper == Short.class)
+            return 2;
+        else if (wrapper == Integer.class)
+            return 3;
+        else if (wrapper == Long.class)
+            return 4;
+        else if (wrapper == Float.class)
+            return 5;
+        else if (wrapper == Double.class)
+            return 6;
+        else
+            return -1;
+    }
+
+    /**
+     * Get a value from an array of alternating types and values, e.g.
+     * functional interface types and functions, which may be
+     * <code>null</code>, or <code>null</code> if there is no value of the
+     * type.
+     */
+    private static Object find(Object[] entries, Class<?> type) {
+        if (entries != null)
+            for (int i = 0; i < entries.length; i += 2)
+                if (entries[i] == type)
+                    return entries[i + 1];
+
+        return null;
+    }
+
+    /**
+     * Copy an array of alternating types and values, which may be
+     * <code>null</code>, adding a value, up to {@link #MAX_PROBES} values.
+     */
+    private static Object[] add(Object[] entries, Class<?> type, Object value) {
+        int length = entries == null ? 0 : entries.length;
+
+        if (length >= 2 * MAX_PROBES)
+            return entries;
+
+        Object[] result = entries == null ? new Object[2] : Arrays.copyOf(entries, length + 2);
+        result[length] = type;
+        result[length + 1] = value;
+        return result;
+    }
+
+    private static Exception rethrow(Throwable e) {
+        if (e instanceof Exception)
+            return (Exception) e;
+        else if (e instanceof Error)
+            throw (Error) e;
+        else
+            return new ReflectException(e);
+    }
+
+
+    /**
+     * The accessible fields of {@link Reflect#fields()}, in declaration order,
+     * from the type up to its topmost superclass.
+     */
+    static final class FieldLayout {
+        final String[]             names;
+        final FieldEntry[]         entries;
+        final Map<String, Integer> index;
+
+        FieldLayout(Map<String, FieldEntry> fields) {
+            this.names = fields.keySet().toArray(new String[0]);
+            this.entries = fields.values().toArray(new FieldEntry[0]);
+            this.index = new HashMap<String, Integer>();
+
+            for (int i = 0; i < names.length; i++)
+                index.put(names[i], i);
+        }
+    }
+
+    /**
+     * The proxy class of a type for a set of interfaces, and the way their
+     * methods are dispatched.
+     */
+    static final class ProxyClass {
+        final Class<?>[]                interfaces;
+        final Map<Method, ProxyEntry>   dispatch;
+
+        // The constructor of the java.lang.reflect.Proxy class, if accessible
+        private volatile Constructor<?> constructor;
+        private volatile boolean        inaccessible;
+
+
+        private final ReflectCache      cache;
+        private volatile ReflectProxy   compiled;
+
+
+        ProxyClass(ReflectCache cache, Class<?>[] interfaces, Map<Method, ProxyEntry> dispatch) {
+
+            this.cache = cache;
+
+            this.interfaces = interfaces;
+            this.dispatch = dispatch;
+        }
+
+        /**
+         * Create a new {@link Proxy} instance, calling the proxy class
+         * constructor directly, once it is known.
+         */
+        Object newProxy(InvocationHandler handler) {
+            Constructor<?> c = constructor;
+
+            if (c != null) {
+                try {
+                    return c.newInstance(handler);
+                }
+
+                // Proxy classes may be encapsulated in modules that can't be read
+                catch (IllegalAccessException e) {
+                    inaccessible();
+                }
+                catch (Exception e) {
+                    throw new ReflectException(e);
+                }
+            }
+
+            Object result = Proxy.newProxyInstance(interfaces[0].getClassLoader(), interfaces, handler);
+
+            if (c == null && !inaccessible) {
+                try {
+                    constructor = Reflect.accessible(result.getClass().getConstructor(InvocationHandler.class));
+                }
+                catch (NoSuchMethodException e) {
+                    throw new ReflectException(e);
+                }
+
+
+
+
+
+
+            }
+
+            return result;
+        }
+
+        /**
+         * Stop calling the proxy class constructor directly.
+         */
+        private void inaccessible() {
+            constructor = null;
+            inaccessible = true;
+        }
+
+
+        /**
+         * Get the compiled proxy class, generating it on first access.
+         */
+        ReflectProxy compiled() {
+            ReflectProxy result = compiled;
+
+            if (result == null) {
+                synchronized (this) {
+                    result = compiled;
+
+                    if (result == null)
+                        compiled = result = ReflectProxy.of(cache.type, Arrays.asList(interfaces), dispatch);
+                }
+            }
+
+            return result;
+        }
+
+    }
+
+    /**
+     * The way a method of a proxied interface is dispatched.
+     */
+    enum ProxyKind {
+
+        /**
+         * Invoke a method of the wrapped type that could be resolved upfront.
+         */
+        METHOD,
+
+        /**
+         * Get a property from a wrapped {@link Map}.
+         */
+        MAP_GET,
+
+        /**
+         * Put a property into a wrapped {@link Map}.
+         */
+        MAP_PUT,
+
+        /**
+         * Invoke the default method of the proxied interface.
+         */
+        DEFAULT
+    }
+
+    /**
+     * A classified method of a proxied interface.
+     */
+    static final class ProxyEntry {
+        final ProxyKind   kind;
+        final MethodEntry method;
+        final String      property;
+
+
+        // The default method of the proxied interface, adapted by spreader()
+        private final MethodHandle special;
+
+
+        ProxyEntry(ProxyKind kind, MethodEntry method, String property, Method proxied) {
+            this.kind = kind;
+            this.method = method;
+            this.property = property;
+
+
+            this.special = kind != ProxyKind.METHOD && proxied.isDefault() ? special(proxied) : null;
+
+        }
+
+
+        boolean isDefault() {
+            return special != null;
+        }
+
+        /**
+         * Invoke the default method on a proxy, without binding the handle to
+         * the proxy, and without wrapping any exceptions.
+         */
+        Object invokeDefault(Object proxy, Object[] args) throws Throwable {
+            Object[] a = args == null ? NO_ARGS : args;
+            return (Object) special.invokeExact(proxy, a);
+        }
+
+        private static MethodHandle special(Method method) {
+            try {
+                Class<?> type = method.getDeclaringClass();
+                return spreader(Reflect.privateLookup(type).unreflectSpecial(method, type), false, method.getParameterTypes().length);
+            }
+
+            // Such methods are left to the dynamic path, which reports the error
+            catch (Exception ignore) {
+                return null;
+            }
+        }
+
+    }
+
+    /**
+     * A method name and argument type vector used as a cache key.
+     */
+    private static final class Signature {
+        final String     name;
+        final Class<?>[] types;
+        final int        hash;
+
+        Signature(String name, Class<?>[] types) {
+            this.name = name;
+            this.types = types;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+
+            if (!(obj instanceof Signature))
+                return false;
+
+            Signature other = (Signature) obj;
+            return name.equals(other.name) && Arrays.equals(types, other.types);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.reflect.Constructor;
+
+import org.joor.ReflectCache.ConstructorEntry;
+
+/**
+ * A constructor that has been looked up once through
+ * {@link Reflect#constructor(Class...)}, and that can be invoked repeatedly.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Lukas Eder
+ */
+public final class ReflectConstructor {
+
+    private final ConstructorEntry entry;
+    private final InvocationMode   mode;
+
+    ReflectConstructor(ConstructorEntry entry, InvocationMode mode) {
+        this.entry = entry;
+        this.mode = mode;
+
+        Reflect.accessible(entry.constructor);
+    }
+
+    /**
+     * Call a constructor without arguments.
+     *
+     * @see #create(Object...)
+     */
+    public Reflect create() throws ReflectException {
+        return create(Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call the constructor.
+     * <p>
+     * This is the prepared equivalent of {@link Reflect#create(Object...)}.
+     *
+     * @param args The constructor arguments
+     * @return The wrapped new object, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Reflect create(Object... args) throws ReflectException {
+        return Reflect.on(mode, entry, args);
+    }
+
+    /**
+     * Call a constructor without arguments, returning the unwrapped new
+     * object.
+     *
+     * @see #newInstance(Object...)
+     */
+    public <T> T newInstance() throws ReflectException {
+        return newInstance(Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call the constructor, returning the unwrapped new object.
+     *
+     * @param <T> A convenience generic parameter for automatic unsafe casting
+     * @param args The constructor arguments
+     * @return The new object.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newInstance(Object... args) throws ReflectException {
+        try {
+            return (T) entry.newInstance(mode, args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * The underlying constructor.
+     */
+    public Constructor<?> constructor() {
+        return entry.constructor;
+    }
+
+    /**
+     * The {@link InvocationMode} used by this constructor.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return entry.constructor.toString();
+    }
+}
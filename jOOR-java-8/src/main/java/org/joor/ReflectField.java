@@ -0,0 +1,637 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.reflect.Field;
+import java.util.function.BinaryOperator;
+
+import org.joor.ReflectCache.FieldEntry;
+
+/**
+ * A field that has been looked up once through
+ * {@link Reflect#fieldAccessor(String)}, and that can be read and written
+ * repeatedly, on any number of instances.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Lukas Eder
+ */
+public final class ReflectField {
+
+    private final FieldEntry     entry;
+    private final InvocationMode mode;
+
+    ReflectField(FieldEntry entry, InvocationMode mode) {
+        this.entry = entry;
+        this.mode = mode;
+    }
+
+    /**
+     * Get the field value from an instance.
+     * <p>
+     * This is the prepared equivalent of {@link Reflect#get(String)}. The
+     * instance is ignored for static fields.
+     *
+     * @param <T> A convenience generic parameter for automatic unsafe casting
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object target) throws ReflectException {
+        try {
+            return (T) entry.get(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get the wrapped field value from an instance.
+     * <p>
+     * This is the prepared equivalent of {@link Reflect#field(String)}. The
+     * instance is ignored for static fields.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The wrapped field value
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Reflect field(Object target) throws ReflectException {
+        return Reflect.on(entry.field.getType(), get(target), mode);
+    }
+
+    /**
+     * Set the field value on an instance.
+     * <p>
+     * This is the prepared equivalent of {@link Reflect#set(String, Object)}.
+     * The instance is ignored for static fields.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public void set(Object target, Object value) throws ReflectException {
+        try {
+            Reflect.set(mode, entry, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>boolean</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getBoolean(Object)
+     */
+    public boolean getBoolean(Object target) throws ReflectException {
+        try {
+            return entry.getBoolean(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>boolean</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setBoolean(Object, boolean)
+     */
+    public void setBoolean(Object target, boolean value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setBoolean(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>byte</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getByte(Object)
+     */
+    public byte getByte(Object target) throws ReflectException {
+        try {
+            return entry.getByte(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>byte</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setByte(Object, byte)
+     */
+    public void setByte(Object target, byte value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setByte(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>char</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getChar(Object)
+     */
+    public char getChar(Object target) throws ReflectException {
+        try {
+            return entry.getChar(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>char</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setChar(Object, char)
+     */
+    public void setChar(Object target, char value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setChar(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>short</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getShort(Object)
+     */
+    public short getShort(Object target) throws ReflectException {
+        try {
+            return entry.getShort(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>short</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setShort(Object, short)
+     */
+    public void setShort(Object target, short value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setShort(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get an <code>int</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getInt(Object)
+     */
+    public int getInt(Object target) throws ReflectException {
+        try {
+            return entry.getInt(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set an <code>int</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setInt(Object, int)
+     */
+    public void setInt(Object target, int value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setInt(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>long</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getLong(Object)
+     */
+    public long getLong(Object target) throws ReflectException {
+        try {
+            return entry.getLong(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>long</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setLong(Object, long)
+     */
+    public void setLong(Object target, long value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setLong(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>float</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getFloat(Object)
+     */
+    public float getFloat(Object target) throws ReflectException {
+        try {
+            return entry.getFloat(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>float</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setFloat(Object, float)
+     */
+    public void setFloat(Object target, float value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setFloat(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get a <code>double</code> field value from an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @return The field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#getDouble(Object)
+     */
+    public double getDouble(Object target) throws ReflectException {
+        try {
+            return entry.getDouble(mode, Reflect.unwrap(target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Set a <code>double</code> field value on an instance,
+     * without boxing it.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param value The new field value
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Field#setDouble(Object, double)
+     */
+    public void setDouble(Object target, double value) throws ReflectException {
+        try {
+            entry.removeFinal();
+            entry.setDouble(mode, Reflect.unwrap(target), value);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * The underlying field.
+     */
+    public Field field() {
+        return entry.field;
+    }
+
+    /**
+     * The {@link InvocationMode} used by this field.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return entry.field.toString();
+    }
+}
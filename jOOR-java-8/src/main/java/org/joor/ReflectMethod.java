@@ -0,0 +1,233 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.reflect.Method;
+
+import org.joor.ReflectCache.MethodEntry;
+
+/**
+ * A method that has been looked up once through
+ * {@link Reflect#method(String, Class...)}, and that can be invoked
+ * repeatedly, on any number of receivers.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Lukas Eder
+ */
+public final class ReflectMethod {
+
+    private final MethodEntry    entry;
+    private final InvocationMode mode;
+
+    ReflectMethod(MethodEntry entry, InvocationMode mode) {
+        this.entry = entry;
+        this.mode = mode;
+
+        Reflect.accessible(entry.method);
+    }
+
+    /**
+     * Call a method without arguments on a receiver.
+     *
+     * @see #call(Object, Object...)
+     */
+    public Reflect call(Object target) throws ReflectException {
+        return call(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call the method on a receiver.
+     * <p>
+     * This is the prepared equivalent of
+     * {@link Reflect#call(String, Object...)}. The receiver is ignored for
+     * static methods.
+     *
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The wrapped method result or the wrapped receiver if the method
+     *         returns <code>void</code>, to be used for further reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public Reflect call(Object target, Object... args) throws ReflectException {
+        return Reflect.on(mode, entry, Reflect.unwrap(target), args);
+    }
+
+    /**
+     * Call a method without arguments on a receiver, returning the unwrapped
+     * result.
+     *
+     * @see #invoke(Object, Object...)
+     */
+    public <T> T invoke(Object target) throws ReflectException {
+        return invoke(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call the method on a receiver, returning the unwrapped result.
+     * <p>
+     * The receiver is ignored for static methods.
+     *
+     * @param <T> A convenience generic parameter for automatic unsafe casting
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The method result, or <code>null</code> if the method returns
+     *         <code>void</code>.
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object target, Object... args) throws ReflectException {
+        try {
+            return (T) entry.invoke(mode, Reflect.unwrap(target), args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method without arguments that returns an <code>int</code>
+     * on a receiver, without boxing the result.
+     *
+     * @see #invokeInt(Object, Object...)
+     */
+    public int invokeInt(Object target) throws ReflectException {
+        return invokeInt(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns an <code>int</code> on a
+     * receiver, without boxing the result.
+     *
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Reflect#callInt(String, Object...)
+     */
+    public int invokeInt(Object target, Object... args) throws ReflectException {
+        try {
+            return entry.invokeInt(mode, Reflect.unwrap(target), args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method without arguments that returns a <code>long</code>
+     * on a receiver, without boxing the result.
+     *
+     * @see #invokeLong(Object, Object...)
+     */
+    public long invokeLong(Object target) throws ReflectException {
+        return invokeLong(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>long</code> on a
+     * receiver, without boxing the result.
+     *
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Reflect#callLong(String, Object...)
+     */
+    public long invokeLong(Object target, Object... args) throws ReflectException {
+        try {
+            return entry.invokeLong(mode, Reflect.unwrap(target), args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method without arguments that returns a <code>double</code>
+     * on a receiver, without boxing the result.
+     *
+     * @see #invokeDouble(Object, Object...)
+     */
+    public double invokeDouble(Object target) throws ReflectException {
+        return invokeDouble(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>double</code> on a
+     * receiver, without boxing the result.
+     *
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Reflect#callDouble(String, Object...)
+     */
+    public double invokeDouble(Object target, Object... args) throws ReflectException {
+        try {
+            return entry.invokeDouble(mode, Reflect.unwrap(target), args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Call a method without arguments that returns a <code>boolean</code>
+     * on a receiver, without boxing the result.
+     *
+     * @see #invokeBoolean(Object, Object...)
+     */
+    public boolean invokeBoolean(Object target) throws ReflectException {
+        return invokeBoolean(target, Reflect.NO_ARGS);
+    }
+
+    /**
+     * Call a method that returns a <code>boolean</code> on a
+     * receiver, without boxing the result.
+     *
+     * @param target The receiver, or a {@link Reflect} wrapping it
+     * @param args The method arguments
+     * @return The method result
+     * @throws ReflectException If any reflection exception occurred.
+     * @see Reflect#callBoolean(String, Object...)
+     */
+    public boolean invokeBoolean(Object target, Object... args) throws ReflectException {
+        try {
+            return entry.invokeBoolean(mode, Reflect.unwrap(target), args);
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * The underlying method.
+     */
+    public Method method() {
+        return entry.method;
+    }
+
+    /**
+     * The {@link InvocationMode} used by this method.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return entry.method.toString();
+    }
+}
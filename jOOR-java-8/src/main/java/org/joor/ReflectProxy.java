@@ -0,0 +1,328 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.joor.ReflectAccessor.AccessorClassLoader;
+import org.joor.ReflectCache.ProxyEntry;
+import org.joor.ReflectCache.ProxyKind;
+
+
+/**
+ * A compiled proxy class for a type and a set of interfaces, as an
+ * alternative to a {@link java.lang.reflect.Proxy}.
+ * <p>
+ * The proxy class is generated as Java source code, which is compiled using
+ * {@link Compile}, and whose methods delegate directly to the methods of the
+ * wrapped object, without boxing arguments, or dispatching on
+ * {@link Method}. This is only possible if all proxied methods could be
+ * resolved upfront to public methods of public types, see
+ * {@link Reflect#as(Class, Class...)}. Default methods that the wrapped type
+ * doesn't implement are inherited.
+ * <p>
+ * Exceptions thrown by the wrapped object are wrapped in a
+ * {@link ReflectException}, like by a <code>java.lang.reflect.Proxy</code>
+ * in the other {@link InvocationMode}s.
+ *
+ * @author Lukas Eder
+ */
+final class ReflectProxy {
+
+    /**
+     * The proxy of interfaces that are not eligible, or that failed to
+     * compile.
+     */
+    static final ReflectProxy     NONE    = new ReflectProxy(null, false);
+
+    private static final String   PACKAGE = "org.joor.generated";
+
+    /**
+     * The way proxy classes wrap exceptions, which is assigned to their
+     * static <code>exceptions</code> field, as they can't reference jOOR's
+     * types.
+     */
+    private static final Function<Throwable, RuntimeException> EXCEPTIONS = e -> new ReflectException(new InvocationTargetException(e));
+
+    /**
+     * The proxy class constructor, of type <code>(Object)Object</code>.
+     */
+    private final MethodHandle    constructor;
+
+    /**
+     * Whether the proxy calls instance methods of the wrapped object.
+     */
+    private final boolean         instance;
+
+    private ReflectProxy(MethodHandle constructor, boolean instance) {
+        this.constructor = constructor;
+        this.instance = instance;
+    }
+
+    /**
+     * Create a new proxy for a wrapped object, or return <code>null</code> if
+     * this isn't possible.
+     */
+    Object newInstance(Class<?> type, Object object) {
+        if (constructor == null || instance && !type.isInstance(object))
+            return null;
+
+        try {
+            return (Object) constructor.invokeExact(object);
+        }
+        catch (Throwable e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Generate, compile and load the proxy class of a type and a set of
+     * interfaces, or return {@link #NONE} if this isn't possible.
+     */
+    static ReflectProxy of(Class<?> type, List<Class<?>> interfaces, Map<Method, ProxyEntry> dispatch) {
+        List<Class<?>> referenced = new ArrayList<>(interfaces);
+        Map<String, Method> methods = new LinkedHashMap<>();
+
+        for (Class<?> i : interfaces) {
+            if (!ReflectAccessor.isAccessible(i))
+                return NONE;
+
+            for (Method method : i.getMethods())
+                if (!Modifier.isStatic(method.getModifiers()) && !add(methods, method))
+                    return NONE;
+        }
+
+        // Proxies also dispatch equals(), hashCode() and toString()
+        for (Method method : Object.class.getMethods())
+            if (!Modifier.isFinal(method.getModifiers()) && !add(methods, method))
+                return NONE;
+
+        String className = type.getName().replace('.', '_').replace('$', '_') + "_Proxy";
+        StringBuilder body = new StringBuilder();
+        boolean instance = false;
+
+        for (Method method : methods.values()) {
+            ProxyEntry entry = dispatch.get(method);
+
+            // Default methods that the wrapped type doesn't implement are inherited
+            if (entry != null && entry.kind == ProxyKind.DEFAULT)
+                continue;
+            else if (entry == null || entry.kind != ProxyKind.METHOD || !isEligible(method, entry.method.method))
+                return NONE;
+
+            Method target = entry.method.method;
+            Class<?>[] types = method.getParameterTypes();
+            boolean isStatic = Modifier.isStatic(target.getModifiers());
+            instance |= !isStatic;
+            referenced.add(target.getDeclaringClass());
+            referenced.add(method.getReturnType());
+            referenced.addAll(Arrays.asList(types));
+            referenced.addAll(Arrays.asList(method.getExceptionTypes()));
+
+            body.append("\n    @Override\n    public ").append(method.getReturnType().getCanonicalName())
+                .append(' ').append(method.getName()).append('(');
+
+            for (int i = 0; i < types.length; i++)
+                body.append(i > 0 ? ", " : "").append(types[i].getCanonicalName()).append(" a").append(i);
+
+            body.append(')');
+
+            for (int i = 0; i < method.getExceptionTypes().length; i++)
+                body.append(i > 0 ? ", " : " throws ").append(method.getExceptionTypes()[i].getCanonicalName());
+
+            body.append(" {\n        try {\n            ").append(method.getReturnType() == void.class ? "" : "return ");
+
+            if (isStatic)
+                body.append(target.getDeclaringClass().getCanonicalName());
+            else
+                body.append("((").append(target.getDeclaringClass().getCanonicalName()).append(") target)");
+
+            body.append('.').append(target.getName()).append('(');
+
+            for (int i = 0; i < types.length; i++)
+                body.append(i > 0 ? ", " : "").append('a').append(i);
+
+            body.append(");\n        }\n        catch (Throwable e) {\n            throw exceptions.apply(e);\n        }\n    }\n");
+        }
+
+        StringBuilder implemented = new StringBuilder();
+        for (Class<?> i : interfaces)
+            implemented.append(implemented.length() > 0 ? ", " : "").append(i.getCanonicalName());
+
+        String content =
+            "package " + PACKAGE + ";\n"
+          + "\n"
+          + "@SuppressWarnings(\"all\")\n"
+          + "public final class " + className + " implements " + implemented + " {\n"
+          + "    public static java.util.function.Function<Throwable, RuntimeException> exceptions;\n"
+          + "\n"
+          + "    private final Object target;\n"
+          + "\n"
+          + "    public " + className + "(Object target) {\n"
+          + "        this.target = target;\n"
+          + "    }\n"
+          + body
+          + "}\n";
+
+        ClassLoader cl = type.getClassLoader();
+
+        // The proxy class must see all the types it references
+        if (!sees(cl, referenced) && !sees(cl = interfaces.get(0).getClassLoader(), referenced))
+            return NONE;
+
+        String name = PACKAGE + "." + className;
+        Map<String, byte[]> classes;
+
+        try {
+            classes = Compile.classes(name, content,
+                new CompileOptions().options("-proc:none", "-nowarn").classLoader(cl), cl, false);
+        }
+
+        // The compiler may be unavailable, or the types may not be on its
+        // class path, etc. In that case, a java.lang.reflect.Proxy is used.
+        catch (Exception ignore) {
+            return NONE;
+        }
+
+        byte[] bytes = classes == null ? null : classes.get(name);
+
+        if (bytes == null)
+            return NONE;
+
+        try {
+            Class<?> c = new AccessorClassLoader(cl).define(name, bytes);
+            c.getField("exceptions").set(null, EXCEPTIONS);
+
+            return new ReflectProxy(
+                MethodHandles.publicLookup()
+                    .findConstructor(c, methodType(void.class, Object.class))
+                    .asType(methodType(Object.class, Object.class)),
+                instance
+            );
+        }
+
+        // The class may not be linkable against the types that its class
+        // loader sees, in which case a java.lang.reflect.Proxy is used, too
+        catch (LinkageError ignore) {
+            return NONE;
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ReflectException("Cannot load generated proxy class " + name, e);
+        }
+    }
+
+    /**
+     * Add a method to a set of methods by signature, returning
+     * <code>false</code> if the signature is already present with a different
+     * return type.
+     */
+    private static boolean add(Map<String, Method> methods, Method method) {
+        String key = method.getName() + Arrays.toString(method.getParameterTypes());
+        Method existing = methods.get(key);
+
+        if (existing == null)
+            methods.put(key, method);
+
+        return existing == null || existing.getReturnType() == method.getReturnType();
+    }
+
+    /**
+     * Whether a proxied method can be implemented by a direct call to a
+     * target method in generated source code.
+     */
+    private static boolean isEligible(Method method, Method target) {
+        if (!Modifier.isPublic(target.getModifiers())
+            || !ReflectAccessor.isAccessible(target.getDeclaringClass())
+            || !ReflectAccessor.isAccessible(method.getReturnType())
+            || !ReflectAccessor.isAccessible(method.getParameterTypes())
+            || !ReflectAccessor.isAccessible(method.getExceptionTypes()))
+            return false;
+
+        Class<?>[] types = method.getParameterTypes();
+        Class<?>[] targetTypes = target.getParameterTypes();
+
+        for (int i = 0; i < types.length; i++)
+            if (!isConvertible(types[i], targetTypes[i]))
+                return false;
+
+        if (method.getReturnType() != void.class
+            && (target.getReturnType() == void.class || !isConvertible(target.getReturnType(), method.getReturnType())))
+            return false;
+
+        // Checked exceptions of the target must be declared by the proxied method
+        exceptions:
+        for (Class<?> exception : target.getExceptionTypes()) {
+            if (RuntimeException.class.isAssignableFrom(exception) || Error.class.isAssignableFrom(exception))
+                continue;
+
+            for (Class<?> declared : method.getExceptionTypes())
+                if (declared.isAssignableFrom(exception))
+                    continue exceptions;
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether a value of a type can be passed where another type is
+     * expected, possibly boxing or unboxing it.
+     */
+    private static boolean isConvertible(Class<?> from, Class<?> to) {
+        if (to.isAssignableFrom(from))
+            return true;
+        else if (from.isPrimitive())
+            return to.isAssignableFrom(Reflect.wrapper(from));
+        else if (to.isPrimitive())
+            return from == Reflect.wrapper(to);
+        else
+            return false;
+    }
+
+    /**
+     * Whether a class loader loads the same classes as the ones given.
+     */
+    private static boolean sees(ClassLoader cl, List<Class<?>> types) {
+        for (Class<?> type : types) {
+            if (type.isPrimitive())
+                continue;
+
+            try {
+                if (Class.forName(type.getName(), false, cl) != type)
+                    return false;
+            }
+            catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
+
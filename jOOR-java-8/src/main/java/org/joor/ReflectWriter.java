@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import java.lang.reflect.Field;
+
+import org.joor.ReflectCache.FieldEntry;
+
+/**
+ * A set of fields that has been looked up once through
+ * {@link Reflect#writer(String...)}, and whose values can be set repeatedly,
+ * on any number of instances.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Lukas Eder
+ */
+public final class ReflectWriter {
+
+    private final FieldEntry[]   plan;
+    private final InvocationMode mode;
+
+    ReflectWriter(FieldEntry[] plan, InvocationMode mode) {
+        this.plan = plan;
+        this.mode = mode;
+    }
+
+    /**
+     * Set the field values on an instance.
+     * <p>
+     * This is the prepared equivalent of
+     * {@link Reflect#setAll(String[], Object[])}. The instance is ignored for
+     * static fields.
+     *
+     * @param target The instance, or a {@link Reflect} wrapping it
+     * @param values The new field values, in the same order as the field
+     *            names
+     * @throws ReflectException If any reflection exception occurred.
+     */
+    public void set(Object target, Object... values) throws ReflectException {
+        Reflect.set(mode, plan, Reflect.unwrap(target), values);
+    }
+
+    /**
+     * The underlying fields.
+     */
+    public Field[] fields() {
+        Field[] result = new Field[plan.length];
+
+        for (int i = 0; i < plan.length; i++)
+            result[i] = plan[i].field;
+
+        return result;
+    }
+
+    /**
+     * The {@link InvocationMode} used by this writer.
+     */
+    public InvocationMode mode() {
+        return mode;
+    }
+}
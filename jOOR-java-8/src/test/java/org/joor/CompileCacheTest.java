@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Tests for the internals of the {@link Compile} caches.
+ *
+ * @author Lukas Eder
+ */
+public class CompileCacheTest {
+
+    private static final String NAME    = "com.example.CompileCacheTest";
+    private static final String CONTENT = "package com.example; public class CompileCacheTest {}";
+
+    @Test
+    public void testMemoryCache() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+        Map<String, byte[]> c1 = Compile.classes(NAME, CONTENT, new CompileOptions(), cl, true);
+        Map<String, byte[]> c2 = Compile.classes(NAME, CONTENT, new CompileOptions(), cl, true);
+
+        // Identical compilation units are compiled only once
+        assertSame(c1, c2);
+    }
+
+    @Test
+    public void testMemoryCacheKeyIncludesClasspath() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+        Map<String, String> sources = singletonMap(NAME, CONTENT);
+
+        try (URLClassLoader other = new URLClassLoader(new URL[] { new File("other.jar").toURI().toURL() }, cl)) {
+            assertEquals(Compile.key(sources, new CompileOptions(), cl), Compile.key(sources, new CompileOptions(), cl));
+            assertNotEquals(Compile.key(sources, new CompileOptions(), cl), Compile.key(sources, new CompileOptions(), other));
+
+            // An explicit class path replaces the class loader's
+            CompileOptions options = new CompileOptions().options("-classpath", "x.jar");
+            assertEquals(Compile.key(sources, options, cl), Compile.key(sources, options, other));
+        }
+    }
+
+    @Test
+    public void testMemoryCacheRemovesClearedEntries() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+        Map<String, byte[]> c1 = Compile.classes(NAME, CONTENT, new CompileOptions(), cl, true);
+        String key = Compile.key(singletonMap(NAME, CONTENT), new CompileOptions(), cl);
+        assertTrue(Compile.CACHE.containsKey(key));
+
+        // Simulate the garbage collection of the cached classes
+        Compile.CACHE.get(key).enqueue();
+        Map<String, byte[]> c2 = Compile.classes(NAME, CONTENT, new CompileOptions(), cl, true);
+        assertNotSame(c1, c2);
+        assertSame(c2, Compile.CACHE.get(key).get());
+
+        Compile.CACHE.get(key).enqueue();
+        Compile.classes(NAME + "2", CONTENT.replace("CompileCacheTest", "CompileCacheTest2"), new CompileOptions(), cl, true);
+        assertFalse(Compile.CACHE.containsKey(key));
+    }
+
+    @Test
+    public void testDiskCache() throws Exception {
+        Compile.CACHE.clear();
+        Path a = Files.createTempDirectory("joor");
+        Path b = Files.createTempDirectory("joor");
+
+        try {
+            ClassLoader cl = getClass().getClassLoader();
+            Map<String, byte[]> ca = Compile.classes(NAME, source("a"), new CompileOptions().cacheDirectory(a), cl, true);
+            Map<String, byte[]> cb = Compile.classes(NAME, source("b"), new CompileOptions().cacheDirectory(b), cl, true);
+            Path fa = single(a);
+            Path fb = single(b);
+
+            // Replace the cache file of "a", which is read back without compiling
+            Files.copy(fb, fa, StandardCopyOption.REPLACE_EXISTING);
+            Compile.CACHE.clear();
+            Map<String, byte[]> c = Compile.classes(NAME, source("a"), new CompileOptions().cacheDirectory(a), cl, true);
+            assertArrayEquals(cb.get(NAME), c.get(NAME));
+            assertFalse(Arrays.equals(ca.get(NAME), c.get(NAME)));
+        }
+        finally {
+            delete(a);
+            delete(b);
+        }
+    }
+
+    @Test
+    public void testDiskCacheCorruptFiles() throws Exception {
+        Compile.CACHE.clear();
+        Path directory = Files.createTempDirectory("joor");
+
+        try {
+            ClassLoader cl = getClass().getClassLoader();
+            CompileOptions options = new CompileOptions().cacheDirectory(directory);
+            Map<String, byte[]> classes = Compile.classes(NAME, source("a"), options, cl, true);
+            Path file = single(directory);
+            byte[] valid = Files.readAllBytes(file);
+
+            byte[] badMagic = valid.clone();
+            badMagic[0]++;
+
+            byte[] badLength = valid.clone();
+            int offset = 8 + 2 + NAME.length();
+            badLength[offset] = (byte) 0x7F;
+
+            for (byte[] corrupt : asList(badMagic, Arrays.copyOf(valid, valid.length / 2), Arrays.copyOf(valid, 2), badLength, new byte[0])) {
+                Files.write(file, corrupt);
+                Compile.CACHE.clear();
+
+                // Corrupt files are compiled again, and overwritten
+                assertArrayEquals(classes.get(NAME), Compile.classes(NAME, source("a"), options, cl, true).get(NAME));
+                assertArrayEquals(valid, Files.readAllBytes(file));
+                assertEquals(Compile.MAGIC, ByteBuffer.wrap(Files.readAllBytes(file)).getInt());
+            }
+        }
+        finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testDiskCacheStaleTemporaryFiles() throws Exception {
+        Compile.CACHE.clear();
+        Path directory = Files.createTempDirectory("joor");
+
+        try {
+            Path stale = Files.createFile(directory.resolve("stale.classes123.tmp"));
+            Path recent = Files.createFile(directory.resolve("recent.classes456.tmp"));
+            Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+
+            Compile.classes(NAME, source("a"), new CompileOptions().cacheDirectory(directory), getClass().getClassLoader(), true);
+
+            // Recent temporary files may still be written by another JVM
+            assertFalse(Files.exists(stale));
+            assertTrue(Files.exists(recent));
+        }
+        finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testClasspathCache() throws Exception {
+        try (ExtensibleClassLoader cl = new ExtensibleClassLoader()) {
+            String c1 = Compile.classpath(cl);
+
+            // The class path is computed only once, while the inputs don't change
+            assertSame(c1, Compile.classpath(cl));
+
+            File jar = new File("added.jar").getAbsoluteFile();
+            cl.addURL(jar.toURI().toURL());
+            String c2 = Compile.classpath(cl);
+            assertNotEquals(c1, c2);
+            assertTrue(c2, c2.endsWith(File.pathSeparator + jar));
+            assertSame(c2, Compile.classpath(cl));
+        }
+    }
+
+    @Test
+    public void testClasspathSeparators() throws Exception {
+        String cp = System.getProperty("java.class.path");
+        String mp = System.getProperty("jdk.module.path");
+        File jar = new File("url.jar").getAbsoluteFile();
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { new URL("http://localhost/remote.jar"), jar.toURI().toURL() }, null)) {
+            System.setProperty("java.class.path", "cp.jar");
+            System.setProperty("jdk.module.path", "mp.jar");
+
+            // The module path is separated from the class path, and URLs
+            // that aren't files are skipped, without any empty entries
+            assertEquals("cp.jar" + File.pathSeparator + "mp.jar" + File.pathSeparator + jar, Compile.classpath(cl));
+        }
+        finally {
+            restore("java.class.path", cp);
+            restore("jdk.module.path", mp);
+        }
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null)
+            System.clearProperty(key);
+        else
+            System.setProperty(key, value);
+    }
+
+    static final class ExtensibleClassLoader extends URLClassLoader {
+        ExtensibleClassLoader() {
+            super(new URL[0], CompileCacheTest.class.getClassLoader());
+        }
+
+        @Override
+        public void addURL(URL url) {
+            super.addURL(url);
+        }
+    }
+
+    private static String source(String value) {
+        return "package com.example; public class CompileCacheTest { public String value() { return \"" + value + "\"; } }";
+    }
+
+    private static Path single(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> list = files.filter(f -> f.toString().endsWith(".classes")).collect(Collectors.toList());
+            assertEquals(1, list.size());
+            return list.get(0);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList()))
+                Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+}
+
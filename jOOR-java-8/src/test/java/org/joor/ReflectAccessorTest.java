@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the internals of {@link ReflectAccessor}.
+ *
+ * @author Lukas Eder
+ */
+public class ReflectAccessorTest {
+
+    @Test
+    public void testAccessor() throws Throwable {
+        ReflectAccessor accessor = ReflectAccessor.of(String.class);
+        assertNotSame(ReflectAccessor.NONE, accessor);
+
+        int length = accessor.method(String.class.getMethod("length"));
+        assertTrue(length >= 0);
+        assertEquals(3, accessor.invoke(length, "abc", new Object[0]));
+
+        int constructor = accessor.constructor(String.class.getConstructor(String.class));
+        assertTrue(constructor >= 0);
+        assertEquals("abc", accessor.newInstance(constructor, new Object[] { "abc" }));
+
+        // Non-public members are not eligible
+        assertEquals(-1, accessor.method(Object.class.getDeclaredMethod("clone")));
+    }
+
+    @Test
+    public void testFailedMembers() {
+        Runnable r1 = new Runnable() {
+            @Override
+            public void run() {}
+        };
+        Runnable r2 = new Runnable() {
+            @Override
+            public void run() {}
+        };
+
+        Set<Runnable> failed = ReflectAccessor.failed(
+            "Compilation error: /org/joor/generated/X_Accessor.java:2: error: cannot find symbol\n"
+          + "/org/joor/generated/X_Accessor.java:4: error: incompatible types\n"
+          + "/org/joor/generated/X_Accessor.java:4: error: incompatible types\n",
+            asList(null, r1, null, r2)
+        );
+        assertEquals(2, failed.size());
+        assertTrue(failed.contains(r1));
+        assertTrue(failed.contains(r2));
+
+        // Errors outside of any member's code cannot be recovered from
+        assertTrue(ReflectAccessor.failed("X_Accessor.java:1: error: class expected", asList(null, r1)).isEmpty());
+        assertTrue(ReflectAccessor.failed("X_Accessor.java:3: error: class expected", asList(null, r1)).isEmpty());
+        assertTrue(ReflectAccessor.failed("No compiler was provided", asList(null, r1)).isEmpty());
+    }
+}
+
@@ -17,14 +17,20 @@ package org.joor.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.processing.Completion;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -210,6 +216,59 @@ public class CompileOptionsTest {
         }
     }
 
+    @Test
+    public void testCompileCache() {
+        String className = "com.example.CompileCache";
+        String classCode = "package com.example; public class CompileCache {}";
+
+        AProcessor p1 = new AProcessor();
+        Class<?> c1 = Reflect.compile(className, classCode, new CompileOptions()
+            .classLoader(new ClassLoader(getClass().getClassLoader()) {})
+            .processors(p1)
+        ).type();
+
+        // Compilations with annotation processors are not cached
+        AProcessor p2 = new AProcessor();
+        Class<?> c2 = Reflect.compile(className, classCode, new CompileOptions()
+            .classLoader(new ClassLoader(getClass().getClassLoader()) {})
+            .processors(p2)
+        ).type();
+
+        assertTrue(p1.processed);
+        assertTrue(p2.processed);
+        assertEquals(className, c1.getName());
+        assertEquals(className, c2.getName());
+        assertNotSame(c1, c2);
+    }
+
+    @Test
+    public void testCompileCacheDirectory() throws Exception {
+        Path directory = Files.createTempDirectory("joor");
+
+        try {
+            Reflect.compile(
+                "com.example.CompileCacheDirectory",
+                "package com.example; public class CompileCacheDirectory {}",
+                new CompileOptions().cacheDirectory(directory)
+            ).create();
+
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> list = files.collect(Collectors.toList());
+
+                assertEquals(1, list.size());
+                assertTrue(list.get(0).getFileName().toString().endsWith(".classes"));
+            }
+        }
+        finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
     /**
      * -proc:only is a standard option and should be supported.
      * see https://docs.oracle.com/javase/7/docs/technotes/tools/windows/javac.html
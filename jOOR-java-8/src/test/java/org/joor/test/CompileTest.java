@@ -16,14 +16,24 @@ package org.joor.test;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.tools.ToolProvider;
+
+import org.joor.CompileOptions;
 import org.joor.Reflect;
 import org.joor.ReflectException;
 import org.joor.test.CompileTest.J;
@@ -201,6 +211,73 @@ public class CompileTest {
         assertEquals("p.B", d.getSuperclass().getName());
     }
 
+    @Test
+    public void testCompileAll() {
+        Map<String, CharSequence> sources = new LinkedHashMap<>();
+        sources.put("p.CompileAll1", "package p; public class CompileAll1 extends CompileAll2 { public String get() { return new CompileAll3().get(); } }");
+        sources.put("p.CompileAll2", "package p; public class CompileAll2 {}");
+        sources.put("p.CompileAll3", "package p; public class CompileAll3 { public String get() { return \"3\"; } }");
+
+        Map<String, Class<?>> classes = Reflect.compileAll(sources);
+        assertEquals(sources.keySet(), classes.keySet());
+        assertEquals(classes.get("p.CompileAll2"), classes.get("p.CompileAll1").getSuperclass());
+        assertEquals("3", Reflect.onClass(classes.get("p.CompileAll1")).create().call("get").get());
+    }
+
+    @Test
+    public void testCompileAllWithCustomClassLoader() throws Exception {
+        Path directory = Files.createTempDirectory("joor");
+        Path source = Files.createDirectories(directory.resolve("q")).resolve("CompileAllHidden.java");
+        Files.write(source, "package q; public class CompileAllHidden { public String get() { return \"hidden\"; } }".getBytes());
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { directory.toUri().toURL() }, getClass().getClassLoader())) {
+            assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", directory.toString(), source.toString()));
+
+            // The superclass is visible only from the custom class loader
+            Map<String, CharSequence> sources = new LinkedHashMap<>();
+            sources.put("q.CompileAllCustom1", "package q; public class CompileAllCustom1 extends CompileAllHidden {}");
+            sources.put("q.CompileAllCustom2", "package q; public class CompileAllCustom2 extends CompileAllCustom1 {}");
+
+            Map<String, Class<?>> classes = Reflect.compileAll(sources, new CompileOptions().classLoader(cl));
+            assertEquals(cl.loadClass("q.CompileAllHidden"), classes.get("q.CompileAllCustom1").getSuperclass());
+            assertEquals(classes.get("q.CompileAllCustom1"), classes.get("q.CompileAllCustom2").getSuperclass());
+            assertEquals("hidden", Reflect.onClass(classes.get("q.CompileAllCustom2")).create().call("get").get());
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted((p1, p2) -> p2.compareTo(p1))::iterator)
+                    Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testCompileAllSamePackage() {
+
+        // Like compile(), compileAll() defines classes with private access to
+        // the package of the class calling into the compiler, if possible
+        Map<String, CharSequence> sources = new LinkedHashMap<>();
+        sources.put("org.joor.CompileAllSamePackage1", "package org.joor; public class CompileAllSamePackage1 { public String get() { return new CompileAllSamePackage2().get(); } }");
+        sources.put("org.joor.CompileAllSamePackage2", "package org.joor; class CompileAllSamePackage2 { String get() { return Compile.class.getName(); } }");
+
+        Map<String, Class<?>> classes = Reflect.compileAll(sources);
+        assertEquals("org.joor.Compile", Reflect.onClass(classes.get("org.joor.CompileAllSamePackage1")).create().call("get").get());
+    }
+
+    @Test
+    public void testCompileAllPartiallyLoaded() {
+        Map<String, CharSequence> sources = new LinkedHashMap<>();
+        sources.put("org.joor.CompileAllPartially1", "package org.joor; public class CompileAllPartially1 {}");
+        Class<?> c1 = Reflect.compileAll(sources).get("org.joor.CompileAllPartially1");
+
+        // Previously loaded classes are reused, rather than defined again
+        sources.put("org.joor.CompileAllPartially2", "package org.joor; public class CompileAllPartially2 extends CompileAllPartially1 {}");
+        Map<String, Class<?>> classes = Reflect.compileAll(sources);
+        assertEquals(sources.keySet(), classes.keySet());
+        assertSame(c1, classes.get("org.joor.CompileAllPartially1"));
+        assertSame(c1, classes.get("org.joor.CompileAllPartially2").getSuperclass());
+    }
+
 
 
 
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+/**
+ * The means by which {@link Reflect} invokes methods and constructors, and
+ * accesses fields, once they have been resolved.
+ *
+ * @author Lukas Eder
+ * @see Reflect#mode(InvocationMode)
+ */
+public enum InvocationMode {
+
+    /**
+     * Use the <code>java.lang.reflect</code> API, e.g.
+     * {@link java.lang.reflect.Method#invoke(Object, Object...)}.
+     * <p>
+     * This is the default.
+     */
+    REFLECTION,
+
+    /**
+     * Use a <code>java.lang.invoke.MethodHandle</code>, which is produced only
+     * once per resolved member, and then cached.
+     * <p>
+     * This mode requires Java 8. On older JDKs, it behaves like
+     * {@link #REFLECTION}.
+     */
+    METHOD_HANDLES,
+
+    /**
+     * Use a class that accesses members directly, which is generated and
+     * compiled in memory once per type, using the JDK's compiler.
+     * <p>
+     * Only public members of public types are eligible. Other members, and
+     * members of types for which the class cannot be compiled (e.g. because
+     * the JDK's compiler is not available), are accessed like in
+     * {@link #METHOD_HANDLES} mode. This mode requires Java 8. On older JDKs,
+     * it behaves like {@link #REFLECTION}.
+     * <p>
+     * {@link Reflect#as(Class, Class...)} likewise generates a class per type
+     * and set of interfaces, which delegates to the wrapped object directly,
+     * if all proxied methods are eligible. Otherwise, a
+     * {@link java.lang.reflect.Proxy} is created.
+     */
+    COMPILED
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+/* [java-8] */
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+
+/**
+ * A utility that implements functional interfaces, such as
+ * {@link java.util.function.Function}, using resolved members.
+ * <p>
+ * Methods and constructors are implemented through {@link LambdaMetafactory},
+ * just like lambda expressions and method references in source code, such
+ * that the JIT can inline them. When this isn't possible, e.g. because the
+ * member cannot be accessed through a private {@link Lookup} (as is the case
+ * for members in modules that are not open to jOOR), or because the member is
+ * a field, which {@link LambdaMetafactory} does not support, the functional
+ * interface is implemented through {@link MethodHandleProxies} instead.
+ *
+ * @author Lukas Eder
+ */
+final class ReflectLambda {
+
+    private static final Lookup       LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle METHOD_INVOKE;
+    private static final MethodHandle CONSTRUCTOR_NEW_INSTANCE;
+    private static final MethodHandle FIELD_GET;
+    private static final MethodHandle FIELD_SET;
+
+    static {
+        try {
+            METHOD_INVOKE = LOOKUP.findVirtual(Method.class, "invoke", MethodType.methodType(Object.class, Object.class, Object[].class));
+            CONSTRUCTOR_NEW_INSTANCE = LOOKUP.findVirtual(Constructor.class, "newInstance", MethodType.methodType(Object.class, Object[].class));
+            FIELD_GET = LOOKUP.findVirtual(Field.class, "get", MethodType.methodType(Object.class, Object.class));
+            FIELD_SET = LOOKUP.findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class));
+        }
+        catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ReflectLambda() {}
+
+    /**
+     * Implement a functional interface using an accessible method. The
+     * receiver of an instance method is the first argument of the function.
+     */
+    static <F> F method(Class<F> functionType, Method method) {
+        MethodHandle reflective = METHOD_INVOKE.bindTo(method);
+
+        if (Modifier.isStatic(method.getModifiers()))
+            reflective = MethodHandles.insertArguments(reflective, 0, (Object) null);
+
+        return lambda(functionType, method, reflective.asCollector(Object[].class, method.getParameterTypes().length));
+    }
+
+    /**
+     * Implement a functional interface using an accessible constructor.
+     */
+    static <F> F constructor(Class<F> functionType, Constructor<?> constructor) {
+        return lambda(functionType, constructor,
+            CONSTRUCTOR_NEW_INSTANCE.bindTo(constructor).asCollector(Object[].class, constructor.getParameterTypes().length));
+    }
+
+    /**
+     * Implement a functional interface that reads an accessible field. The
+     * instance is the first argument of the function, unless the field is
+     * static.
+     */
+    static <F> F getter(Class<F> functionType, Field field) {
+        MethodHandle handle;
+
+        try {
+            handle = LOOKUP.unreflectGetter(field);
+        }
+        catch (IllegalAccessException e) {
+            handle = FIELD_GET.bindTo(field);
+
+            if (Modifier.isStatic(field.getModifiers()))
+                handle = MethodHandles.insertArguments(handle, 0, (Object) null);
+        }
+
+        return lambda(functionType, field, handle);
+    }
+
+    /**
+     * Implement a functional interface that writes an accessible field. The
+     * instance is the first argument of the function, unless the field is
+     * static.
+     */
+    static <F> F setter(Class<F> functionType, Field field) {
+        MethodHandle handle;
+
+        try {
+            handle = LOOKUP.unreflectSetter(field);
+        }
+        catch (IllegalAccessException e) {
+            handle = FIELD_SET.bindTo(field);
+
+            if (Modifier.isStatic(field.getModifiers()))
+                handle = MethodHandles.insertArguments(handle, 0, (Object) null);
+        }
+
+        return lambda(functionType, field, handle);
+    }
+
+    private static <F> F lambda(Class<F> functionType, Member member, MethodHandle fallback) {
+        Method sam = sam(functionType);
+        MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+
+        if (member instanceof Method || member instanceof Constructor) {
+            Lookup lookup = lookup(member);
+
+            if (lookup != null) {
+                CallSite site = null;
+
+                try {
+                    MethodHandle impl = member instanceof Method
+                        ? lookup.unreflect((Method) member)
+                        : lookup.unreflectConstructor((Constructor<?>) member);
+
+                    site = LambdaMetafactory.metafactory(
+                        lookup,
+                        sam.getName(),
+                        MethodType.methodType(functionType),
+                        samType,
+                        impl,
+                        instantiated(samType, impl.type())
+                    );
+                }
+
+                // The lookup may lack access, or the member may be incompatible
+                // with the functional interface without any further adaptation
+                catch (IllegalAccessException | LambdaConversionException ignore) {}
+
+                if (site != null) {
+                    try {
+                        return functionType.cast(site.getTarget().invoke());
+                    }
+                    catch (Throwable e) {
+                        throw new ReflectException("Cannot implement " + functionType.getName() + " using " + member, e);
+                    }
+                }
+            }
+        }
+
+        try {
+            return MethodHandleProxies.asInterfaceInstance(functionType, fallback.asType(samType));
+        }
+        catch (RuntimeException e) {
+            throw new ReflectException("Cannot implement " + functionType.getName() + " using " + member, e);
+        }
+    }
+
+    /**
+     * A lookup that can access the member, and in whose class the
+     * implementation may be defined, or <code>null</code> if no such lookup
+     * is available.
+     */
+    private static Lookup lookup(Member member) {
+        Class<?> type = member.getDeclaringClass();
+
+        if (Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(member.getModifiers()))
+            return LOOKUP;
+
+        try {
+            return Reflect.privateLookup(type);
+        }
+
+        // The type may be located in a module that is not open to jOOR
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The functional interface method type, with argument and return types
+     * specialised to the implementation's types where possible.
+     */
+    private static MethodType instantiated(MethodType samType, MethodType implType) {
+        MethodType result = samType;
+
+        if (samType.parameterCount() == implType.parameterCount()) {
+            for (int i = 0; i < samType.parameterCount(); i++) {
+                Class<?> s = samType.parameterType(i);
+                Class<?> p = Reflect.wrapper(implType.parameterType(i));
+
+                if (!s.isPrimitive() && s.isAssignableFrom(p))
+                    result = result.changeParameterType(i, p);
+            }
+        }
+
+        Class<?> s = samType.returnType();
+        Class<?> r = Reflect.wrapper(implType.returnType());
+
+        if (!s.isPrimitive() && r != Void.class && s.isAssignableFrom(r))
+            result = result.changeReturnType(r);
+
+        return result;
+    }
+
+    /**
+     * The single abstract method of a functional interface.
+     */
+    private static Method sam(Class<?> functionType) {
+        Method result = null;
+
+        if (functionType.isInterface()) {
+            for (Method method : functionType.getMethods()) {
+                if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+                    if (result != null && !(result.getName().equals(method.getName()) && Arrays.equals(result.getParameterTypes(), method.getParameterTypes())))
+                        throw new ReflectException("Not a functional interface: " + functionType.getName());
+
+                    result = method;
+                }
+            }
+        }
+
+        if (result == null)
+            throw new ReflectException("Not a functional interface: " + functionType.getName());
+
+        return result;
+    }
+
+    /**
+     * Whether an interface method redeclares a public {@link Object} method,
+     * such as {@link java.util.Comparator#equals(Object)}.
+     */
+    private static boolean isObjectMethod(Method method) {
+        for (Method m : Object.class.getMethods())
+            if (m.getName().equals(method.getName()) && Arrays.equals(m.getParameterTypes(), method.getParameterTypes()))
+                return true;
+
+        return false;
+    }
+}
+/* [/java-8] */
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+/* [java-8] */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+/**
+ * Tests for the pooled file managers of {@link Compile}.
+ *
+ * @author Lukas Eder
+ */
+public class CompileFileManagerTest {
+
+    @Test
+    public void testConcurrentCompilations() throws Exception {
+        int threads = 4 * Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<Map<String, byte[]>>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 2 * threads; i++) {
+                String name = "com.example.Concurrent" + i;
+                String content = "package com.example; public class Concurrent" + i + " { public int value() { return " + i + "; } }";
+
+                futures.add(executor.submit(new Callable<Map<String, byte[]>>() {
+                    @Override
+                    public Map<String, byte[]> call() throws Exception {
+                        start.await();
+                        return Compile.classes(name, content, new CompileOptions(), getClass().getClassLoader(), true);
+                    }
+                }));
+            }
+
+            start.countDown();
+
+            for (int i = 0; i < futures.size(); i++) {
+                Map<String, byte[]> classes = futures.get(i).get();
+                assertEquals(1, classes.size());
+                assertNotNull(classes.get("com.example.Concurrent" + i));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompilationsAgainstDifferentClasspaths() throws Exception {
+        Path dir1 = dependency("public static String value() { return \"1\"; }");
+        Path dir2 = dependency("public static String value() { return \"2\"; } public static String only2() { return \"2\"; }");
+
+        try {
+            ClassLoader cl = getClass().getClassLoader();
+            String user1 = "package com.example; public class User1 { String v() { return dep.Dep.value(); } }";
+            String user2 = "package com.example; public class User2 { String v() { return dep.Dep.only2(); } }";
+
+            assertNotNull(Compile.classes("com.example.User1", user1, options(dir1), cl, true).get("com.example.User1"));
+            assertNotNull(Compile.classes("com.example.User2", user2, options(dir2), cl, true).get("com.example.User2"));
+
+            // File managers returned to the pool don't remember the previous class path
+            try {
+                Compile.classes("com.example.User2", user2, options(dir1), cl, true);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("only2"));
+            }
+
+            assertNotNull(Compile.classes("com.example.User1", user1, options(dir2), cl, true).get("com.example.User1"));
+        }
+        finally {
+            delete(dir1);
+            delete(dir2);
+        }
+    }
+
+    private static CompileOptions options(Path classpath) {
+        return new CompileOptions().options("-classpath", classpath.toString());
+    }
+
+    /**
+     * Compile a class <code>dep.Dep</code> with a given body into a new
+     * directory.
+     */
+    private static Path dependency(String body) throws IOException {
+        Path result = Files.createTempDirectory("joor");
+        Path source = Files.createDirectories(result.resolve("dep")).resolve("Dep.java");
+        Files.write(source, ("package dep; public class Dep { " + body + " }").getBytes("UTF-8"));
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", result.toString(), source.toString()));
+        Files.delete(source);
+        return result;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+}
+/* [/java-8] */
@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor;
+
+import static org.joor.Reflect.on;
+import static org.joor.Reflect.onClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the internals of {@link ReflectCache}.
+ *
+ * @author Lukas Eder
+ */
+public class ReflectCacheTest {
+
+    @Test
+    public void testMethodProbes() {
+        assertEquals("34", on((Object) "1234").call("substring", 2).get());
+
+        ReflectCache cache = ReflectCache.of(String.class);
+        ReflectCache.MethodEntry entry = cache.methodFor("substring", new Object[] { 2 });
+        assertNotNull(entry);
+
+        // Subsequent calls with the same argument types reuse the entry
+        assertEquals("4", on((Object) "1234").call("substring", 3).get());
+        assertSame(entry, cache.methodFor("substring", new Object[] { 3 }));
+        assertSame(ReflectCache.of(String.class), cache);
+    }
+
+    @Test
+    public void testConstructorProbes() {
+        assertEquals(0, on(ArrayList.class).create(5).callInt("size"));
+
+        ReflectCache cache = ReflectCache.of(ArrayList.class);
+        ReflectCache.ConstructorEntry entry = cache.constructorFor(new Object[] { 5 });
+        assertNotNull(entry);
+
+        onClass(ArrayList.class).create(10);
+        assertSame(entry, cache.constructorFor(new Object[] { 10 }));
+    }
+
+    @Test
+    public void testPreparedMemberTypesAreCopied() {
+        Class<?>[] types = { Integer.class };
+        onClass(String.class).method("substring", types);
+        types[0] = String.class;
+        assertNull(ReflectCache.of(String.class).methodFor("substring", new Object[] { "x" }));
+
+        types = new Class<?>[] { Integer.class };
+        onClass(ArrayList.class).constructor(types);
+        types[0] = String.class;
+        assertNull(ReflectCache.of(ArrayList.class).constructorFor(new Object[] { "x" }));
+    }
+
+    @Test
+    public void testForeignArgumentTypesAreNotCached() throws Exception {
+        WeakReference<ClassLoader> loader = callWithForeignArgument();
+        assertCollected(loader);
+    }
+
+    private static WeakReference<ClassLoader> callWithForeignArgument() throws Exception {
+        ClassLoader loader = new PluginClassLoader();
+        Object plugin = loader.loadClass(Plugin.class.getName()).newInstance();
+        assertNotSame(Plugin.class, plugin.getClass());
+
+        assertFalse(on((Object) "x").call("equals", plugin).<Boolean>get());
+        assertNull(ReflectCache.of(String.class).methodFor("equals", new Object[] { plugin }));
+
+        on(new ArrayList<Object>()).call("add", plugin);
+        assertNull(ReflectCache.of(ArrayList.class).methodFor("add", new Object[] { plugin }));
+
+        on(ArrayList.class).create(new ArrayList<Object>());
+        on(StringBuilder.class).create((Object) "x");
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    static void assertCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void testForeignProxiesAreNotCachedByTheWrappedType() throws Exception {
+        WeakReference<ClassLoader> loader = proxyForeignInterface();
+        assertCollected(loader);
+    }
+
+    private static WeakReference<ClassLoader> proxyForeignInterface() throws Exception {
+        ClassLoader loader = new PluginClassLoader();
+        Class<?> api = loader.loadClass(PluginApi.class.getName());
+        assertNotSame(PluginApi.class, api);
+
+        Class<?>[] interfaces = { api };
+        for (int i = 0; i < 3; i++) {
+            Object proxy = on((Object) "abc").as(api);
+            assertEquals(3, api.getMethod("length").invoke(proxy));
+        }
+
+        // The proxy class is cached by the interface, which sees String
+        assertNull(ReflectCache.of(String.class).proxy(api));
+        assertNotNull(ReflectCache.of(String.class).proxy(api, interfaces));
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    @Test
+    public void testFields() {
+        ReflectCache cache = ReflectCache.of(ReflectCacheTest.class);
+        on(new ReflectCacheTest()).get("value");
+        ReflectCache.FieldEntry entry = cache.field("value");
+        assertNotNull(entry);
+
+        on(new ReflectCacheTest()).get("value");
+        assertSame(entry, cache.field("value"));
+    }
+
+    @Test
+    public void testMapProxy() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        Bean bean = on(map).as(Bean.class);
+
+        // Getters and setters are dispatched to the map directly
+        ReflectCache.ProxyClass proxy = ReflectCache.of(HashMap.class).proxy(Bean.class, new Class<?>[] { Bean.class });
+        assertEquals(ReflectCache.ProxyKind.MAP_GET, proxy.dispatch.get(Bean.class.getMethod("getName")).kind);
+        assertEquals(ReflectCache.ProxyKind.MAP_GET, proxy.dispatch.get(Bean.class.getMethod("isActive")).kind);
+        assertEquals(ReflectCache.ProxyKind.MAP_PUT, proxy.dispatch.get(Bean.class.getMethod("setName", String.class)).kind);
+
+        for (int i = 0; i < 3; i++) {
+            bean.setName("a" + i);
+            assertEquals("a" + i, bean.getName());
+            assertEquals("a" + i, map.get("name"));
+        }
+
+        map.put("active", true);
+        assertEquals(true, bean.isActive());
+    }
+
+    @Test
+    public void testMapProxyOnNonMap() throws Exception {
+        Bean bean = on(new StringBuilder()).as(Bean.class);
+        assertEquals(ReflectCache.ProxyKind.MAP_GET,
+            ReflectCache.of(StringBuilder.class).proxy(Bean.class, new Class<?>[] { Bean.class }).dispatch.get(Bean.class.getMethod("getName")).kind);
+
+        try {
+            bean.getName();
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(NoSuchMethodException.class, expected.getCause().getClass());
+        }
+
+        try {
+            bean.setName("a");
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(NoSuchMethodException.class, expected.getCause().getClass());
+        }
+
+        /* [java-8] */
+        assertEquals("default", on(new StringBuilder()).as(DefaultBean.class).getName());
+        /* [/java-8] */
+    }
+
+    /* [java-8] */
+    @Test
+    public void testDefaultMethodProxy() throws Exception {
+        Method answer = Defaults.class.getMethod("answer");
+        ReflectCache.ProxyEntry entry = null;
+
+        // The default method is resolved once per proxied type, and reused
+        for (int i = 0; i < 3; i++) {
+            assertEquals(42, on(new Object()).as(Defaults.class).answer());
+
+            ReflectCache.ProxyEntry e = ReflectCache.of(Object.class).proxy(Defaults.class, new Class<?>[] { Defaults.class }).dispatch.get(answer);
+            assertEquals(ReflectCache.ProxyKind.DEFAULT, e.kind);
+            assertTrue(e.isDefault());
+
+            if (entry != null)
+                assertSame(entry, e);
+
+            entry = e;
+        }
+    }
+
+    @Test
+    public void testDefaultMethodProxyOnNonPublicInterface() throws Exception {
+        for (int i = 0; i < 3; i++)
+            assertEquals(43, on(new Object()).as(HiddenDefaults.class).answer());
+
+        ReflectCache.ProxyEntry entry = ReflectCache.of(Object.class).proxy(HiddenDefaults.class, new Class<?>[] { HiddenDefaults.class }).dispatch.get(HiddenDefaults.class.getMethod("answer"));
+        assertEquals(ReflectCache.ProxyKind.DEFAULT, entry.kind);
+        assertTrue(entry.isDefault());
+    }
+    /* [/java-8] */
+
+    int value;
+
+    public static class Plugin {}
+
+    public interface PluginApi {
+        int length();
+    }
+
+    /**
+     * A class loader that loads the <code>Plugin</code> types itself, and
+     * delegates to the class loader of the tests otherwise.
+     */
+    static final class PluginClassLoader extends URLClassLoader {
+        PluginClassLoader() {
+            super(new URL[] { ReflectCacheTest.class.getProtectionDomain().getCodeSource().getLocation() }, ReflectCacheTest.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(ReflectCacheTest.class.getName() + "$Plugin"))
+                return super.loadClass(name, resolve);
+
+            Class<?> result = findLoadedClass(name);
+            return result != null ? result : findClass(name);
+        }
+    }
+
+    public interface Bean {
+        String getName();
+        void setName(String name);
+        boolean isActive();
+    }
+
+    /* [java-8] */
+    public interface Defaults {
+        default int answer() {
+            return 42;
+        }
+    }
+
+    interface HiddenDefaults {
+        default int answer() {
+            return 43;
+        }
+    }
+
+    public interface DefaultBean {
+        default String getName() {
+            return "default";
+        }
+    }
+    /* [/java-8] */
+}
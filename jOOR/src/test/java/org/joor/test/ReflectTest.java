@@ -20,21 +20,48 @@ import static org.joor.Reflect.onClass;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.joor.InvocationMode;
 import org.joor.Reflect;
+import org.joor.ReflectConstructor;
 import org.joor.ReflectException;
+import org.joor.ReflectField;
+import org.joor.ReflectMethod;
+import org.joor.ReflectProxyFactory;
+import org.joor.ReflectWriter;
 import org.joor.test.interfaces.PartialStringAPI1;
 import org.joor.test.interfaces.PartialStringAPI2;
+import org.joor.test.interfaces.StaticStringAPI;
 import org.joor.test.interfaces.Test1;
 import org.joor.test.interfaces.Test10;
 import org.joor.test.interfaces.Test11;
+import org.joor.test.interfaces.Test12;
 import org.joor.test.interfaces.Test2;
 import org.joor.test.interfaces.Test2.ConstructorType;
 import org.joor.test.interfaces.Test3;
@@ -108,6 +135,21 @@ public class ReflectTest {
         catch (ReflectException expected) {}
     }
 
+    @Test
+    public void testConstructorsCached() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("abc", onClass(String.class).create("abc").get());
+            assertEquals("abc", onClass(String.class).create(new StringBuilder("abc")).get());
+            assertEquals("b", onClass(String.class).create("abc".toCharArray(), 1, 1).get());
+            assertEquals(i, (int) onClass(Test10.class).create(i).<Test10>get().i);
+        }
+
+        // Constructors are resolved only once
+        assertSame(
+            onClass(String.class).constructor(String.class).constructor(),
+            onClass(String.class).constructor(String.class).constructor());
+    }
+
     @Test
     public void testPrivateConstructor() {
         assertNull(onClass(PrivateConstructors.class).create().get("string"));
@@ -165,6 +207,485 @@ public class ReflectTest {
         assertEquals("b", onClass(String.class).call("copyValueOf", "abc".toCharArray(), 1, 1).get());
     }
 
+    @Test
+    public void testMethodsCached() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("34", on((Object) "1234").call("substring", 2).get());
+            assertEquals("12", on((Object) "1234").call("substring", 0, 2).get());
+            assertEquals("true", onClass(String.class).call("valueOf", true).get());
+            assertEquals("1", onClass(String.class).call("valueOf", 1).get());
+            assertEquals("a", onClass(String.class).call("valueOf", 'a').get());
+        }
+
+        // Methods are resolved only once
+        assertSame(
+            onClass(String.class).method("substring", int.class).method(),
+            onClass(String.class).method("substring", int.class).method());
+        assertSame(
+            onClass(String.class).method("valueOf", Integer.class).method(),
+            onClass(String.class).method("valueOf", int.class).method());
+    }
+
+    @Test
+    public void testMethodHandlesMode() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            assertEquals(mode, on((Object) "1234").mode(mode).call("substring", 2).mode());
+            assertEquals("34", on((Object) "1234").mode(mode).call("substring", 2).get());
+            assertEquals("12", on((Object) "1234").mode(mode).call("substring", 0, 2).get());
+            assertEquals("2", on((Object) "1234").mode(mode).call("indexOf", "3").call("toString").get());
+            assertEquals("1", onClass(String.class).mode(mode).call("valueOf", 1).get());
+            assertEquals("abc", onClass(String.class).mode(mode).call("format", "%s", new Object[] { "abc" }).get());
+            assertEquals("b", onClass(String.class).mode(mode).create("abc".toCharArray(), 1, 1).get());
+
+            Test4 test4 = new Test4();
+            assertEquals(test4, on(test4).mode(mode).call("i_method").get());
+
+            Test8 test8 = new Test8();
+            assertEquals(test8, on(test8).mode(mode).call("i_method").get());
+            assertEquals(Test8.class, onClass(Test8.class).mode(mode).call("s_method").get());
+
+            Test10 test10 = onClass(Test10.class).mode(mode).create("a", 1).get();
+            assertEquals("a", test10.s);
+
+            Test1 test1 = new Test1();
+            assertEquals(1, (int) (Integer) on(test1).mode(mode).set("I_INT1", 1).get("I_INT1"));
+            assertEquals(1, (int) (Integer) on(test1).mode(mode).set("I_INT2", 1).get("I_INT2"));
+            assertEquals(1, (int) (Integer) onClass(Test1.class).mode(mode).set("S_INT1", 1).get("S_INT1"));
+            assertNull(onClass(Test1.class).mode(mode).set("S_INT2", null).get("S_INT2"));
+
+            TestHierarchicalMethodsSubclass test2 = new TestHierarchicalMethodsSubclass();
+            assertEquals(1, (int) (Integer) on(test2).mode(mode).set("invisibleField1", 1).get("invisibleField1"));
+            assertEquals(TestHierarchicalMethodsSubclass.PRIVATE_RESULT, on(test2).mode(mode).call("priv_method", 1).get());
+
+            try {
+                on((Object) "1234").mode(mode).call("substring", 5);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertTrue(expected.getCause() instanceof InvocationTargetException);
+                assertTrue(expected.getCause().getCause() instanceof StringIndexOutOfBoundsException);
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitiveFields() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            Test12 test12 = new Test12();
+            Reflect reflect = on(test12).mode(mode);
+
+            assertTrue(reflect.setBoolean("I_BOOLEAN", true).getBoolean("I_BOOLEAN"));
+            assertEquals((byte) 1, reflect.setByte("I_BYTE", (byte) 1).getByte("I_BYTE"));
+            assertEquals('a', reflect.setChar("I_CHAR", 'a').getChar("I_CHAR"));
+            assertEquals((short) 2, reflect.setShort("I_SHORT", (short) 2).getShort("I_SHORT"));
+            assertEquals(3, reflect.setInt("I_INT", 3).getInt("I_INT"));
+            assertEquals(4L, reflect.setLong("I_LONG", 4L).getLong("I_LONG"));
+            assertEquals(5.0f, reflect.setFloat("I_FLOAT", 5.0f).getFloat("I_FLOAT"), 0.0f);
+            assertEquals(6.0, reflect.setDouble("I_DOUBLE", 6.0).getDouble("I_DOUBLE"), 0.0);
+            assertEquals(6.0, test12.I_DOUBLE, 0.0);
+
+            // Widening conversions
+            assertEquals(3L, reflect.getLong("I_INT"));
+            assertEquals(7L, reflect.setLong("I_LONG", 7).getLong("I_LONG"));
+
+            assertEquals(8L, onClass(Test12.class).mode(mode).setLong("S_LONG", 8L).getLong("S_LONG"));
+            assertEquals(8L, Test12.S_LONG);
+
+            ReflectField field = onClass(Test12.class).mode(mode).fieldAccessor("I_LONG");
+            field.setLong(test12, 9L);
+            assertEquals(9L, field.getLong(test12));
+            assertEquals(9.0, field.getDouble(on(test12)), 0.0);
+
+            try {
+                reflect.getInt("I_LONG");
+                fail();
+            }
+            catch (ReflectException expected) {}
+        }
+    }
+
+    @Test
+    public void testPreparedFieldArguments() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            ReflectField i = onClass(Test12.class).mode(mode).fieldAccessor("I_INT");
+            ReflectField integer = onClass(Test12.class).mode(mode).fieldAccessor("I_INTEGER");
+            ReflectField string = onClass(Test12.class).mode(mode).fieldAccessor("I_STRING");
+            Test12 test12 = new Test12();
+            test12.I_INTEGER = 1;
+
+            // Receiver mismatches
+            assertFieldFailure(mode, IllegalArgumentException.class, i, new Object(), null);
+            assertFieldFailure(mode, NullPointerException.class, i, null, null);
+            assertFieldFailure(mode, IllegalArgumentException.class, string, "x", null);
+
+            // Value mismatches
+            assertFieldFailure(mode, IllegalArgumentException.class, i, test12, "x");
+            assertFieldFailure(mode, IllegalArgumentException.class, i, test12, 1L);
+            assertFieldFailure(mode, IllegalArgumentException.class, string, test12, 1);
+            assertFieldFailure(mode, IllegalArgumentException.class, integer, test12, "x");
+            i.set(test12, (short) 2);
+            assertEquals(2, test12.I_INT);
+            i.set(test12, 'a');
+
+            // Primitive accessors of reference fields, and narrowing conversions
+            try {
+                integer.getInt(test12);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+
+            try {
+                integer.setInt(test12, 2);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+
+            try {
+                i.getShort(test12);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+
+            try {
+                i.setLong(test12, 2L);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+
+            try {
+                i.getInt(new Object());
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+
+            try {
+                i.setInt(null, 1);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), NullPointerException.class, expected.getCause().getClass());
+            }
+
+            assertEquals(Integer.valueOf(1), test12.I_INTEGER);
+            assertEquals('a', test12.I_INT);
+        }
+    }
+
+    /**
+     * Set a field value, or get it if the value is <code>null</code>.
+     */
+    private static void assertFieldFailure(InvocationMode mode, Class<?> cause, ReflectField field, Object target, Object value) {
+        try {
+            if (value == null)
+                field.get(target);
+            else
+                field.set(target, value);
+
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(mode.toString(), cause, expected.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testSetAll() {
+        Test12 test12 = new Test12();
+        on(test12).setAll(new String[] { "I_INT", "I_LONG", "S_LONG" }, new Object[] { 1, 2L, 3L });
+        assertEquals(1, test12.I_INT);
+        assertEquals(2L, test12.I_LONG);
+        assertEquals(3L, Test12.S_LONG);
+
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("I_INT", 4);
+        values.put("I_STRING", "a");
+        assertEquals("a", on(test12).setAll(values).get("I_STRING"));
+        assertEquals(4, test12.I_INT);
+
+        ReflectWriter writer = onClass(Test12.class).writer("I_INT", "I_DOUBLE");
+        for (int i = 0; i < 3; i++) {
+            Test12 t = new Test12();
+            writer.set(t, i, (double) i);
+            assertEquals(i, t.I_INT);
+            assertEquals(i, t.I_DOUBLE, 0.0);
+        }
+
+        try {
+            writer.set(test12, 1);
+            fail();
+        }
+        catch (ReflectException expected) {}
+
+        try {
+            on(test12).setAll(new String[] { "I_INT", "NOT_A_FIELD" }, new Object[] { 1, 2 });
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
+
+    /* [java-11] */
+    @Test
+    public void testMemoryOrderFields() {
+        Test12 test12 = new Test12();
+        Reflect reflect = on(test12);
+
+        assertEquals(1, (int) reflect.setVolatile("I_INT", 1).<Integer>getVolatile("I_INT"));
+        assertEquals(2L, (long) reflect.setRelease("I_LONG", 2L).<Long>getAcquire("I_LONG"));
+        assertEquals("a", reflect.setOpaque("I_STRING", "a").getOpaque("I_STRING"));
+        assertEquals(3L, (long) onClass(Test12.class).setVolatile("S_LONG", 3L).<Long>getVolatile("S_LONG"));
+        assertEquals(3L, Test12.S_LONG);
+
+        ReflectField field = reflect.fieldAccessor("I_STRING");
+        field.setRelease(test12, "b");
+        assertEquals("b", field.getAcquire(test12));
+        assertEquals("b", field.getVolatile(on(test12)));
+
+        try {
+            reflect.setVolatile("I_INT", "a");
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
+
+    @Test
+    public void testAtomicFields() throws Exception {
+        final Test12 test12 = new Test12();
+        final Reflect reflect = on(test12);
+
+        assertTrue(reflect.compareAndSet("I_INT", 0, 1));
+        assertFalse(reflect.compareAndSet("I_INT", 0, 2));
+        assertEquals(1, test12.I_INT);
+        assertEquals(1, (int) reflect.<Integer>getAndSet("I_INT", 3));
+        assertEquals(3, (int) reflect.<Integer>getAndAdd("I_INT", 2));
+        assertEquals(5, test12.I_INT);
+        assertEquals(0L, (long) reflect.<Long>getAndAdd("I_LONG", 1));
+        assertEquals("ab", reflect.accumulateAndGet("I_STRING", "b", (a, b) -> a == null ? "a" + b : a + b));
+
+        ReflectField field = reflect.fieldAccessor("I_LONG");
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++)
+                    field.getAndAdd(test12, 1);
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(4001L, test12.I_LONG);
+        assertEquals(4003L, (long) field.accumulateAndGet(test12, 2L, Long::sum));
+    }
+    /* [/java-11] */
+
+    @Test
+    public void testPrimitiveCalls() {
+        assertEquals(3, on((Object) "abc").callInt("length"));
+        assertEquals(1, on((Object) "abc").callInt("indexOf", "b"));
+        assertEquals(3L, on((Object) "abc").callLong("length"));
+        assertEquals(3.0, on((Object) "abc").callDouble("length"), 0.0);
+        assertEquals(1.5, onClass(Math.class).callDouble("abs", -1.5), 0.0);
+        assertEquals(42L, onClass(Long.class).callLong("parseLong", "42"));
+        assertTrue(on((Object) "abc").callBoolean("startsWith", "a"));
+        assertFalse(onClass(Boolean.class).callBoolean("parseBoolean", "abc"));
+        assertEquals(0, on(new ArrayList<Object>()).callInt("size"));
+
+        ReflectMethod length = onClass(String.class).method("length");
+        assertEquals(3, length.invokeInt("abc"));
+        assertEquals(4L, length.invokeLong(on((Object) "abcd")));
+
+        try {
+            on((Object) "abc").callInt("charAt", 5);
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertTrue(expected.getCause() instanceof InvocationTargetException);
+        }
+
+        try {
+            on((Object) "abc").callInt("toString");
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
+
+    @Test
+    public void testRepeatedCalls() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("1", onClass(String.class).call("valueOf", 1).get());
+            assertEquals("a", onClass(String.class).call("valueOf", 'a').get());
+            assertEquals("ab", onClass(String.class).call("valueOf", new char[] { 'a', 'b' }).get());
+            assertTrue(on(new ArrayList<Object>()).callBoolean("add", (Object) null));
+            assertEquals("abc", on((Object) "abc").call("toString").get());
+            assertEquals(3, on((Object) "abc").callInt("length"));
+            assertEquals(0, on(ArrayList.class).create().callInt("size"));
+            assertEquals(3, onClass(String.class).method("length").invokeInt("abc"));
+            assertEquals(0, onClass(ArrayList.class).constructor().create().callInt("size"));
+        }
+    }
+
+    @Test
+    public void testPreparedMembers() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            ReflectMethod substring = onClass(String.class).mode(mode).method("substring", int.class);
+            assertEquals(mode, substring.mode());
+            assertEquals("34", substring.invoke("1234", 2));
+            assertEquals("cd", substring.call(on((Object) "abcd"), 2).get());
+
+            ReflectMethod valueOf = onClass(String.class).mode(mode).method("valueOf", Integer.class);
+            assertEquals(int.class, valueOf.method().getParameterTypes()[0]);
+            assertEquals("1", valueOf.invoke(null, 1));
+
+            ReflectMethod priv = onClass(TestHierarchicalMethodsSubclass.class).mode(mode).method("priv_method", int.class);
+            assertEquals(TestHierarchicalMethodsSubclass.PRIVATE_RESULT, priv.invoke(new TestHierarchicalMethodsSubclass(), 1));
+
+            ReflectConstructor constructor = onClass(Test10.class).mode(mode).constructor(String.class, Integer.class);
+            assertEquals("a", constructor.<Test10>newInstance("a", 1).s);
+            assertEquals("b", constructor.create("b", 2).get("s"));
+
+            ReflectField field = onClass(Test1.class).mode(mode).fieldAccessor("I_INT1");
+            Test1 test1 = new Test1();
+            field.set(test1, 3);
+            assertEquals(3, (int) field.<Integer>get(test1));
+            assertEquals(3, (int) field.field(on(test1)).<Integer>get());
+
+            ReflectField staticField = onClass(Test1.class).mode(mode).fieldAccessor("S_INT1");
+            staticField.set(null, 4);
+            assertEquals(4, Test1.S_INT1);
+        }
+
+        try {
+            onClass(String.class).method("substring", Object.class);
+            fail();
+        }
+        catch (ReflectException expected) {}
+
+        try {
+            onClass(Test1.class).fieldAccessor("NO_SUCH_FIELD");
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
+
+    @Test
+    public void testPreparedMemberArguments() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            ReflectMethod substring = onClass(String.class).mode(mode).method("substring", int.class);
+            assertInvalidArgument(substring, "abc", "x");
+            assertInvalidArgument(substring, "abc", 1L);
+            assertInvalidArgument(substring, "abc", (Object) null);
+            assertInvalidArgument(substring, "abc");
+            assertInvalidArgument(substring, "abc", 1, 2);
+            assertInvalidArgument(substring, new Object(), 1);
+            assertEquals("bc", substring.invoke("abc", (byte) 1));
+            assertEquals("bc", substring.invoke("abc", 'b' - 'a'));
+            assertEquals("bc", substring.invoke("abc", (char) 1));
+
+            try {
+                substring.invoke("abc", 10);
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), InvocationTargetException.class, expected.getCause().getClass());
+            }
+
+            assertEquals(Long.valueOf(1L), onClass(Long.class).mode(mode).method("valueOf", long.class).<Long>invoke(null, 1));
+            assertEquals(Double.valueOf(1.0), onClass(Double.class).mode(mode).method("valueOf", double.class).<Double>invoke(null, 'a' - 96));
+
+            ReflectConstructor constructor = onClass(StringBuilder.class).mode(mode).constructor(int.class);
+
+            try {
+                constructor.newInstance("x");
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(mode.toString(), IllegalArgumentException.class, expected.getCause().getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testPreparedPrimitiveMethods() {
+        for (InvocationMode mode : InvocationMode.values()) {
+            ReflectMethod length = onClass(String.class).mode(mode).method("length");
+            assertEquals(3, length.invokeInt("abc"));
+            assertEquals(3L, length.invokeLong("abc"));
+            assertEquals(3.0, length.invokeDouble("abc"), 0.0);
+            assertEquals(3, on((Object) "abc").mode(mode).callInt("length"));
+
+            ReflectMethod charAt = onClass(String.class).mode(mode).method("charAt", int.class);
+            assertEquals('b', charAt.invokeInt("abc", 1));
+            assertEquals('b', charAt.invokeInt("abc", (byte) 1));
+            assertTrue(onClass(String.class).mode(mode).method("isEmpty").invokeBoolean(""));
+
+            // Argument and receiver mismatches
+            assertInvocationFailure(mode, IllegalArgumentException.class, charAt, "abc", "x");
+            assertInvocationFailure(mode, IllegalArgumentException.class, charAt, "abc", 1L);
+            assertInvocationFailure(mode, IllegalArgumentException.class, charAt, new Object(), 1);
+
+            // Exceptions thrown by the method
+            assertInvocationFailure(mode, InvocationTargetException.class, charAt, "abc", 10);
+
+            // Results that cannot be converted to int
+            assertInvocationFailure(mode, ClassCastException.class, onClass(Long.class).mode(mode).method("parseLong", String.class), null, "1");
+            assertInvocationFailure(mode, ClassCastException.class, onClass(String.class).mode(mode).method("valueOf", int.class), null, 1);
+            assertInvocationFailure(mode, NullPointerException.class, onClass(StringBuilder.class).mode(mode).method("setLength", int.class), new StringBuilder(), 0);
+        }
+    }
+
+    private static void assertInvocationFailure(InvocationMode mode, Class<?> cause, ReflectMethod method, Object target, Object... args) {
+        try {
+            method.invokeInt(target, args);
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(mode.toString(), cause, expected.getCause().getClass());
+        }
+    }
+
+    private static void assertInvalidArgument(ReflectMethod method, Object target, Object... args) {
+        try {
+            method.invoke(target, args);
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(method.mode().toString(), IllegalArgumentException.class, expected.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testNoSuchMembers() {
+        TestHierarchicalMethodsSubclass subclass = new TestHierarchicalMethodsSubclass();
+
+        try {
+            on(subclass).call("no_such_method", 1);
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertTrue(expected.getCause() instanceof NoSuchMethodException);
+        }
+
+        try {
+            onClass(TestHierarchicalMethodsSubclass.class).create("no such constructor");
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertTrue(expected.getCause() instanceof NoSuchMethodException);
+        }
+    }
+
     @Test
     public void testVoidMethods() {
         // Instance methods
@@ -298,6 +819,27 @@ public class ReflectTest {
         assertNull(accessible(null));
     }
 
+    @Test
+    public void testFieldsCached() {
+        TestHierarchicalMethodsSubclass test = new TestHierarchicalMethodsSubclass();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, (int) (Integer) on(test).set("invisibleField1", i).get("invisibleField1"));
+            assertEquals(i, (int) (Integer) on(test).set("visibleField3", i).get("visibleField3"));
+
+            try {
+                on(test).get("noSuchField");
+                fail();
+            }
+            catch (ReflectException expected) {}
+        }
+
+        // Fields are resolved only once
+        assertSame(
+            on(test).fieldAccessor("invisibleField1").field(),
+            onClass(TestHierarchicalMethodsSubclass.class).fieldAccessor("invisibleField1").field());
+    }
+
     @Test
     public void testFinalFields() {
 
@@ -414,6 +956,28 @@ public class ReflectTest {
         assertTrue(on(test2).fields().containsKey("visibleField3"));
     }
 
+    @Test
+    public void testFieldValues() {
+        Test1 test1 = new Test1();
+        test1.I_INT1 = 1;
+        test1.I_INT2 = 2;
+
+        assertEquals(Arrays.asList("I_INT1", "I_INT2", "I_DATA"), new ArrayList<String>(on(test1).fields().keySet()));
+        assertEquals(Arrays.asList(1, 2, null), Arrays.asList(on(test1).values()));
+
+        // The map is a view, reading values on access
+        Map<String, Reflect> fields = on(test1).fields();
+        test1.I_INT1 = 3;
+        assertEquals(3, (int) (Integer) fields.get("I_INT1").get());
+        assertNull(fields.get("NOT_A_FIELD"));
+
+        try {
+            fields.put("I_INT1", on(4));
+            fail();
+        }
+        catch (UnsupportedOperationException expected) {}
+    }
+
     @Test
     public void testFieldAdvanced() {
         onClass(Test1.class).set("S_DATA", onClass(Test1.class).create())
@@ -447,6 +1011,33 @@ public class ReflectTest {
         assertEquals("a", on((Object) "abc").as(PartialStringAPI1.class).substring(0, 1));
         assertEquals("b", on((Object) "abc").as(PartialStringAPI1.class).substring(1, 2));
         assertEquals("c", on((Object) "abc").as(PartialStringAPI1.class).substring(2, 3));
+
+        assertEquals("abc", on((Object) "abc").as(PartialStringAPI1.class).toString());
+        assertEquals("abc".hashCode(), on((Object) "abc").as(PartialStringAPI1.class).hashCode());
+    }
+
+    @Test
+    public void testOverloadedProxy() {
+        StaticStringAPI api = onClass(String.class).as(StaticStringAPI.class);
+
+        // Overloads are resolved using the runtime argument types
+        assertEquals("ab", api.valueOf(new char[] { 'a', 'b' }));
+        assertEquals("1", api.valueOf(1));
+        assertEquals("true", api.valueOf(true));
+    }
+
+    @Test
+    public void testProxyFactory() {
+        ReflectProxyFactory<PartialStringAPI1> strings = onClass(String.class).proxyFactory(PartialStringAPI1.class);
+        assertEquals("bc", strings.as("abc").substring(1));
+        assertEquals("ef", strings.as(on((Object) "def")).substring(1));
+        assertEquals("abc", strings.as("abc").toString());
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        ReflectProxyFactory<Test6> maps = onClass(HashMap.class).proxyFactory(Test6.class);
+        maps.as(map).setFoo("abc");
+        assertEquals("abc", map.get("foo"));
+        assertEquals("abc", maps.as(map).getFoo());
     }
 
     @Test
@@ -591,6 +1182,198 @@ public class ReflectTest {
         expectedException.expect(IllegalArgumentException.class);
         Reflect.on(new Object()).as(InterfaceWithDefaultMethods.class).throwIllegalArgumentException();
     }
+
+    @Test
+    public void testCompiledMode() {
+        Reflect string = on((Object) "1234").mode(InvocationMode.COMPILED);
+        assertEquals("34", string.call("substring", 2).get());
+        assertEquals("1", onClass(String.class).mode(InvocationMode.COMPILED).call("valueOf", 1).get());
+        assertEquals(0, (int) onClass(ArrayList.class).mode(InvocationMode.COMPILED).create().call("size").<Integer>get());
+
+        try {
+            string.call("substring", 5);
+            fail();
+        }
+        catch (ReflectException expected) {
+            boolean compiled = false;
+
+            for (StackTraceElement e : expected.getCause().getCause().getStackTrace())
+                compiled |= e.getClassName().startsWith("org.joor.generated.");
+
+            assertTrue(compiled);
+        }
+
+        Test1 test1 = new Test1();
+        assertEquals(1, (int) (Integer) on(test1).mode(InvocationMode.COMPILED).set("I_INT1", 1).get("I_INT1"));
+        assertEquals(1, test1.I_INT1);
+
+        // Private members are not eligible
+        assertEquals(TestHierarchicalMethodsSubclass.PRIVATE_RESULT,
+            on(new TestHierarchicalMethodsSubclass()).mode(InvocationMode.COMPILED).call("priv_method", 1).get());
+    }
+
+    @Test
+    public void testCompiledProxy() {
+        CharSequence sequence = on((Object) "abc").mode(InvocationMode.COMPILED).as(CharSequence.class);
+        assertFalse(Proxy.isProxyClass(sequence.getClass()));
+        assertEquals(3, sequence.length());
+        assertEquals('b', sequence.charAt(1));
+        assertEquals("bc", sequence.subSequence(1, 3));
+        assertEquals("abc", sequence.toString());
+
+        // Interfaces in packages that are not exported fall back to a Proxy
+        PartialStringAPI1 api = on((Object) "abc").mode(InvocationMode.COMPILED).as(PartialStringAPI1.class);
+        assertEquals("bc", api.substring(1));
+        assertEquals("bc", api.substring(Integer.valueOf(1)));
+
+        // Default methods are inherited
+        assertEquals(42, on(new Object()).mode(InvocationMode.COMPILED).as(InterfaceWithDefaultMethods.class).returnAnInt());
+
+        // Overloaded methods are not eligible
+        StaticStringAPI overloaded = onClass(String.class).mode(InvocationMode.COMPILED).as(StaticStringAPI.class);
+        assertTrue(Proxy.isProxyClass(overloaded.getClass()));
+        assertEquals("ab", overloaded.valueOf(new char[] { 'a', 'b' }));
+    }
+
+    @Test
+    public void testCompiledProxyExceptions() throws Exception {
+        BufferedWriter writer = new BufferedWriter(new StringWriter());
+        writer.close();
+
+        // Exceptions are wrapped like by the proxies of the other modes
+        Flushable compiled = on(writer).mode(InvocationMode.COMPILED).as(Flushable.class);
+        Flushable reflection = on(writer).as(Flushable.class);
+        assertFalse(Proxy.isProxyClass(compiled.getClass()));
+        assertTrue(Proxy.isProxyClass(reflection.getClass()));
+
+        for (Flushable flushable : Arrays.asList(compiled, reflection)) {
+            try {
+                flushable.flush();
+                fail();
+            }
+            catch (ReflectException expected) {
+                assertEquals(InvocationTargetException.class, expected.getCause().getClass());
+                assertEquals(IOException.class, expected.getCause().getCause().getClass());
+            }
+        }
+
+        CharSequence sequence = on(new StringBuilder()).mode(InvocationMode.COMPILED).as(CharSequence.class);
+        assertFalse(Proxy.isProxyClass(sequence.getClass()));
+
+        try {
+            sequence.charAt(1);
+            fail();
+        }
+        catch (ReflectException expected) {
+            assertEquals(StringIndexOutOfBoundsException.class, expected.getCause().getCause().getClass());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompiledProxyBoxing() {
+        Supplier<Integer> supplier = on(new AtomicInteger(5)).mode(InvocationMode.COMPILED).as(Supplier.class);
+        assertFalse(Proxy.isProxyClass(supplier.getClass()));
+        assertEquals(Integer.valueOf(5), supplier.get());
+
+        CharSequence sequence = on((Object) "abc").mode(InvocationMode.COMPILED).as(CharSequence.class);
+        assertFalse(Proxy.isProxyClass(sequence.getClass()));
+        assertEquals('c', sequence.charAt(2));
+        assertEquals(3, sequence.length());
+    }
+
+    @Test
+    public void testCompiledProxyObjectMethods() {
+        CharSequence sequence = on((Object) "abc").mode(InvocationMode.COMPILED).as(CharSequence.class);
+        assertFalse(Proxy.isProxyClass(sequence.getClass()));
+
+        // equals(), hashCode() and toString() are delegated to the wrapped object
+        assertTrue(sequence.equals("abc"));
+        assertFalse(sequence.equals("abd"));
+        assertEquals("abc".hashCode(), sequence.hashCode());
+        assertEquals("abc", sequence.toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFunctions() {
+        ToIntFunction<String> length = onClass(String.class).function(ToIntFunction.class, "length");
+        assertEquals(3, length.applyAsInt("abc"));
+        assertEquals(length, onClass(String.class).function(ToIntFunction.class, "length"));
+
+        Class<?>[] types = { int.class };
+        BiFunction<String, Integer, String> substring = onClass(String.class).function(BiFunction.class, "substring", types);
+        assertEquals("bc", substring.apply("abc", 1));
+
+        // The argument types are copied before they are cached
+        types[0] = Object.class;
+        assertSame(substring, onClass(String.class).function(BiFunction.class, "substring", int.class));
+
+        Function<Integer, String> valueOf = onClass(String.class).function(Function.class, "valueOf", int.class);
+        assertEquals("1", valueOf.apply(1));
+
+        BiFunction<TestHierarchicalMethodsSubclass, Integer, String> priv = onClass(TestHierarchicalMethodsSubclass.class).function(BiFunction.class, "priv_method", int.class);
+        assertEquals(TestHierarchicalMethodsSubclass.PRIVATE_RESULT, priv.apply(new TestHierarchicalMethodsSubclass(), 1));
+
+        Supplier<ArrayList<?>> list = onClass(ArrayList.class).factory(Supplier.class);
+        assertTrue(list.get().isEmpty());
+        assertTrue(list.get() != list.get());
+
+        Function<String, PrivateConstructors> constructor = onClass(PrivateConstructors.class).factory(Function.class, String.class);
+        assertEquals("abc", constructor.apply("abc").string);
+
+        try {
+            onClass(String.class).function(Runnable.class, "length");
+            fail();
+        }
+        catch (ReflectException expected) {}
+
+        try {
+            onClass(String.class).function(Map.class, "length");
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPropertyFunctions() {
+        class Bean {
+            private String name;
+            private int value;
+
+            public String getName() {
+                return "get: " + name;
+            }
+
+            public void setName(String name) {
+                this.name = "set: " + name;
+            }
+        }
+
+        Bean bean = new Bean();
+        BiConsumer<Bean, String> setName = onClass(Bean.class).setter("name", BiConsumer.class);
+        Function<Bean, String> getName = onClass(Bean.class).getter("name", Function.class);
+        setName.accept(bean, "a");
+        assertEquals("get: set: a", getName.apply(bean));
+
+        ObjIntConsumer<Bean> setValue = onClass(Bean.class).setter("value", ObjIntConsumer.class);
+        ToIntFunction<Bean> getValue = onClass(Bean.class).getter("value", ToIntFunction.class);
+        setValue.accept(bean, 42);
+        assertEquals(42, getValue.applyAsInt(bean));
+
+        Consumer<Integer> setStatic = onClass(Test1.class).setter("S_INT1", Consumer.class);
+        IntSupplier getStatic = onClass(Test1.class).getter("S_INT1", IntSupplier.class);
+        setStatic.accept(3);
+        assertEquals(3, getStatic.getAsInt());
+        assertEquals(3, Test1.S_INT1);
+
+        try {
+            onClass(Bean.class).getter("xyz", Function.class);
+            fail();
+        }
+        catch (ReflectException expected) {}
+    }
     /* [/java-8] */
 
     @Test
@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joor.test.interfaces;
+
+/**
+ * @author Lukas Eder
+ */
+public class Test12 {
+    public static long    S_LONG;
+    public boolean        I_BOOLEAN;
+    public byte           I_BYTE;
+    public char           I_CHAR;
+    public short          I_SHORT;
+    public int            I_INT;
+    public long           I_LONG;
+    public float          I_FLOAT;
+    public double         I_DOUBLE;
+    public Integer        I_INTEGER;
+    private String        I_STRING;
+}